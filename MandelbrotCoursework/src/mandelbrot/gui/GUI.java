@@ -3,15 +3,38 @@ package mandelbrot.gui;
 import java.awt.Dimension;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
+import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.BoxLayout;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import mandelbrot.maths.ComplexNumber;
+import mandelbrot.maths.InteriorStatistics;
+import mandelbrot.render.Colouring;
+import mandelbrot.render.DiskTileCache;
+import mandelbrot.render.InverseIterationRenderer;
+import mandelbrot.render.JuliaCache;
+import mandelbrot.render.JuliaMode;
+import mandelbrot.render.MarianiSilverRenderer;
+import mandelbrot.render.Palette;
+import mandelbrot.render.ProgressiveRenderer;
+import mandelbrot.render.RenderMode;
+import mandelbrot.render.RenderScheduler;
+import mandelbrot.render.TileCache;
+import mandelbrot.render.TileRenderer;
+import mandelbrot.render.ViewState;
+import mandelbrot.render.Viewport;
 import mandelbrot.utilities.Pair;
 
 public class GUI extends JFrame
@@ -25,6 +48,24 @@ public class GUI extends JFrame
 	final static int DEFAULT_ITERATIONS = 100;
 	final int PAINT_TYPE = BufferedImage.TYPE_INT_ARGB;
 	final static File IMAGE_DIRECTORY = new File(System.getProperty("user.dir") + "/images/");
+	final static int RENDER_PARALLELISM = Integer.getInteger("mandelbrot.parallelism", Runtime.getRuntime().availableProcessors());
+	final static int RENDER_TILE_SIZE = Integer.getInteger("mandelbrot.tileSize", TileRenderer.DEFAULT_TILE_SIZE);
+	final static int PROGRESSIVE_INITIAL_STEP = Integer.getInteger("mandelbrot.progressiveStep", ProgressiveRenderer.DEFAULT_INITIAL_STEP);
+	final static long TILE_CACHE_BYTES = Long.getLong("mandelbrot.tileCacheMegabytes", TileCache.DEFAULT_MAX_BYTES / (1024 * 1024))
+			* 1024 * 1024;
+	final static File TILE_CACHE_DIRECTORY = new File(System.getProperty("mandelbrot.tileCacheDirectory", IMAGE_DIRECTORY + "/tiles/"));
+	final static long JULIA_CACHE_BYTES = Long.getLong("mandelbrot.juliaCacheMegabytes", JuliaCache.DEFAULT_MAX_BYTES / (1024 * 1024))
+			* 1024 * 1024;
+	final static int JULIA_PREFETCH_THREADS = Integer.getInteger("mandelbrot.juliaPrefetchThreads", Math.min(2, Runtime.getRuntime()
+			.availableProcessors() - 1));
+	final static int JULIA_PREFETCH_STEPS = Integer.getInteger("mandelbrot.juliaPrefetchSteps", 2);
+	final static int JULIA_TARGET_FPS = Integer.getInteger("mandelbrot.juliaTargetFps", 30);
+	final static int JULIA_IDLE_MILLIS = Integer.getInteger("mandelbrot.juliaIdleMillis", 250);
+	final static int JULIA_OUTLINE_HITS = Integer.getInteger("mandelbrot.juliaOutlineHits", InverseIterationRenderer.DEFAULT_HITS_PER_PIXEL);
+	final static int JULIA_OUTLINE_POINTS = Integer.getInteger("mandelbrot.juliaOutlinePoints",
+			InverseIterationRenderer.DEFAULT_POINTS_PER_PIXEL);
+	final static long DISK_TILE_CACHE_BYTES = Long.getLong("mandelbrot.diskTileCacheMegabytes", DiskTileCache.DEFAULT_MAX_BYTES
+			/ (1024 * 1024)) * 1024 * 1024;
 
 
 	@SuppressWarnings("unused")
@@ -35,18 +76,37 @@ public class GUI extends JFrame
 	private JuliaPanel pnlJulia;
 	private InfoPanel pnlInfo;
 
-	private Pair<Double, Double> xAxisComplex;
-	private Pair<Double, Double> yAxisComplex;
+	private volatile Viewport viewport;
 	private int iterations;
 	private ComplexNumber complexCoordinate;
 
 	boolean favouriteSelected = false;
 
 	private MandelbrotThread mandelbrotThread;
+	private TileRenderer tileRenderer;
+	private ProgressiveRenderer progressiveRenderer;
+	private MarianiSilverRenderer marianiSilverRenderer;
+	private InverseIterationRenderer inverseIterationRenderer;
+	private TileCache tileCache;
+	private JuliaCache juliaCache;
+	private Point lastJuliaCursor;
+	private ViewState lastJuliaView;
+	private Timer juliaIdleTimer;
+	private volatile RenderMode renderMode = RenderMode.valueOf(System.getProperty("mandelbrot.renderMode", RenderMode.PROGRESSIVE.name()));
+	private volatile boolean interiorChecks = Boolean.parseBoolean(System.getProperty("mandelbrot.interiorChecks", "true"));
+	private volatile boolean symmetry = Boolean.parseBoolean(System.getProperty("mandelbrot.symmetry", "true"));
+	private volatile boolean laneKernel = Boolean.parseBoolean(System.getProperty("mandelbrot.laneKernel", "true"));
+	private volatile JuliaMode juliaMode = JuliaMode.valueOf(System.getProperty("mandelbrot.juliaMode", JuliaMode.ESCAPE_TIME.name()));
+	private volatile boolean juliaAdaptive = Boolean.parseBoolean(System.getProperty("mandelbrot.juliaAdaptive", "true"));
+	private volatile boolean seriesApproximation = Boolean.parseBoolean(System.getProperty("mandelbrot.seriesApproximation", "true"));
+	private volatile InteriorStatistics lastInteriorStatistics;
+	private volatile Palette mandelbrotPalette = Palette.OCEAN;
+	private volatile Colouring mandelbrotColouring = Colouring.valueOf(System.getProperty("mandelbrot.colouring", Colouring.SMOOTH.name()));
 	private JuliaThread juliaThread;
 
-	private boolean mandelbrotNeedsRecalculate;
-	private boolean juliaNeedsRecalculate;
+	private RenderScheduler<ViewState> mandelbrotScheduler;
+	private RenderScheduler<ViewState> juliaScheduler;
+	private ViewState requestedMandelbrotView;
 
 	private static final long serialVersionUID = -9167797785983558030L;
 
@@ -54,9 +114,26 @@ public class GUI extends JFrame
 	public GUI()
 	{
 		super();
+		tileRenderer = new TileRenderer(RENDER_PARALLELISM, RENDER_TILE_SIZE);
+		progressiveRenderer = new ProgressiveRenderer(tileRenderer, PROGRESSIVE_INITIAL_STEP);
+		marianiSilverRenderer = new MarianiSilverRenderer(tileRenderer);
+		inverseIterationRenderer = new InverseIterationRenderer(tileRenderer, JULIA_OUTLINE_HITS, JULIA_OUTLINE_POINTS);
+		tileCache = new TileCache(TILE_CACHE_BYTES, DISK_TILE_CACHE_BYTES > 0 ? new DiskTileCache(TILE_CACHE_DIRECTORY,
+				DISK_TILE_CACHE_BYTES) : null);
+		juliaCache = new JuliaCache(JULIA_CACHE_BYTES);
+		juliaIdleTimer = new Timer(JULIA_IDLE_MILLIS, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				requestFullJuliaRender();
+			}
+		});
+		juliaIdleTimer.setRepeats(false);
+		mandelbrotScheduler = new RenderScheduler<ViewState>();
+		juliaScheduler = new RenderScheduler<ViewState>();
 		juliaThread = new JuliaThread(this);
 		mandelbrotThread = new MandelbrotThread(this);
-		setJuliaNeedsRecalculate(false);
 	}
 
 
@@ -68,8 +145,7 @@ public class GUI extends JFrame
 		frame.setResizable(true);
 		frame.setMinimumSize(new Dimension(DEFAULT_FRAME_WIDTH, DEFAULT_FRAME_HEIGHT));
 
-		frame.setxAxisComplex(DEFAULT_X_AXIS_COMPLEX);
-		frame.setyAxisComplex(DEFAULT_Y_AXIS_COMPLEX);
+		frame.setComplexBounds(DEFAULT_X_AXIS_COMPLEX, DEFAULT_Y_AXIS_COMPLEX);
 		frame.setIterations(DEFAULT_ITERATIONS);
 		frame.setResizable(false);
 
@@ -103,6 +179,15 @@ public class GUI extends JFrame
 		getPnlInfo().init();
 
 		setSize(DEFAULT_FRAME_WIDTH, DEFAULT_FRAME_HEIGHT);
+		addWindowListener(new WindowAdapter()
+		{
+			@Override
+			public void windowClosing(WindowEvent e)
+			{
+				// Tiles read from the disk are only recorded with the next write, and a session may write nothing
+				tileCache.flush();
+			}
+		});
 		setDefaultCloseOperation(EXIT_ON_CLOSE);
 		setVisible(true);
 	}
@@ -146,29 +231,342 @@ public class GUI extends JFrame
 	}
 
 
-	synchronized boolean isJuliaNeedsRecalculate()
+	TileRenderer getTileRenderer()
 	{
-		return juliaNeedsRecalculate;
+		return tileRenderer;
 	}
 
 
-	public synchronized void setJuliaNeedsRecalculate(boolean juliaNeedsRecalculate)
+	ProgressiveRenderer getProgressiveRenderer()
 	{
-		this.juliaNeedsRecalculate = juliaNeedsRecalculate;
+		return progressiveRenderer;
 	}
 
 
-	
-	synchronized boolean isMandelbrotNeedsRecalculate()
+	MarianiSilverRenderer getMarianiSilverRenderer()
 	{
-		return mandelbrotNeedsRecalculate;
+		return marianiSilverRenderer;
 	}
 
 
-	
-	public synchronized void setMandelbrotNeedsRecalculate(boolean mandelbrotNeedsRecalculate)
+	InverseIterationRenderer getInverseIterationRenderer()
 	{
-		this.mandelbrotNeedsRecalculate = mandelbrotNeedsRecalculate;
+		return inverseIterationRenderer;
+	}
+
+
+	/**
+	 * @return <b>tileCache</b> The tiles of recently rendered Mandelbrot views, which later views reuse instead of
+	 *         calculating again, backed by the tiles on disk from earlier runs
+	 */
+	TileCache getTileCache()
+	{
+		return tileCache;
+	}
+
+
+	JuliaCache getJuliaCache()
+	{
+		return juliaCache;
+	}
+
+
+	RenderMode getRenderMode()
+	{
+		return renderMode;
+	}
+
+
+	/**
+	 * Switches the way the Mandelbrot panel is rendered, and renders the current view again with it
+	 * 
+	 * @param renderMode
+	 *            The new render mode
+	 */
+	void setRenderMode(RenderMode renderMode)
+	{
+		this.renderMode = renderMode;
+		forceMandelbrotRender();
+	}
+
+
+	Palette getMandelbrotPalette()
+	{
+		return mandelbrotPalette;
+	}
+
+
+	/**
+	 * Switches the palette of the Mandelbrot panel and recolours the image on screen, without calculating it again
+	 * 
+	 * @param mandelbrotPalette
+	 *            The new palette
+	 */
+	void setMandelbrotPalette(Palette mandelbrotPalette)
+	{
+		this.mandelbrotPalette = mandelbrotPalette;
+		getPnlMandelbrot().recolour();
+	}
+
+
+	Colouring getMandelbrotColouring()
+	{
+		return mandelbrotColouring;
+	}
+
+
+	/**
+	 * Switches the way the Mandelbrot panel's values are mapped on to its palette, and recolours the image on screen
+	 * without calculating it again
+	 * 
+	 * @param mandelbrotColouring
+	 *            The new colouring
+	 */
+	void setMandelbrotColouring(Colouring mandelbrotColouring)
+	{
+		this.mandelbrotColouring = mandelbrotColouring;
+		getPnlMandelbrot().recolour();
+	}
+
+
+	boolean isInteriorChecks()
+	{
+		return interiorChecks;
+	}
+
+
+	void setInteriorChecks(boolean interiorChecks)
+	{
+		this.interiorChecks = interiorChecks;
+	}
+
+
+	JuliaMode getJuliaMode()
+	{
+		return juliaMode;
+	}
+
+
+	/**
+	 * Switches the way the Julia panel is rendered, and renders the Julia set under the cursor again with it
+	 * 
+	 * @param juliaMode
+	 *            The new way to render the Julia panel
+	 */
+	void setJuliaMode(JuliaMode juliaMode)
+	{
+		this.juliaMode = juliaMode;
+		if (lastJuliaView != null)
+			getJuliaScheduler().submit(new ViewState(getPnlJulia().getViewport(), lastJuliaView.getIterations(), lastJuliaView
+					.getJuliaReal(), lastJuliaView.getJuliaImaginary()));
+	}
+
+
+	/**
+	 * @return <b>juliaAdaptive</b> Whether the Julia set is drawn at a lower resolution while the cursor is moving
+	 */
+	boolean isJuliaAdaptive()
+	{
+		return juliaAdaptive;
+	}
+
+
+	void setJuliaAdaptive(boolean juliaAdaptive)
+	{
+		this.juliaAdaptive = juliaAdaptive;
+	}
+
+
+	/**
+	 * @return <b>symmetry</b> Whether the part of a view which is the reflection of another part of it is copied from
+	 *         that part rather than calculated, in the real axis for the Mandelbrot set and through the origin for Julia
+	 *         sets
+	 */
+	boolean isSymmetry()
+	{
+		return symmetry;
+	}
+
+
+	void setSymmetry(boolean symmetry)
+	{
+		this.symmetry = symmetry;
+	}
+
+
+	/**
+	 * @return <b>laneKernel</b> Whether the Mandelbrot panel iterates runs of pixels four at a time with the lane
+	 *         kernel, rather than one at a time with the scalar kernel
+	 */
+	boolean isLaneKernel()
+	{
+		return laneKernel;
+	}
+
+
+	void setLaneKernel(boolean laneKernel)
+	{
+		this.laneKernel = laneKernel;
+	}
+
+
+	/**
+	 * @return <b>seriesApproximation</b> Whether deep zooms skip the early iterations of every pixel with a series
+	 *         approximation
+	 */
+	boolean isSeriesApproximation()
+	{
+		return seriesApproximation;
+	}
+
+
+	void setSeriesApproximation(boolean seriesApproximation)
+	{
+		this.seriesApproximation = seriesApproximation;
+	}
+
+
+	/**
+	 * @return <b>lastInteriorStatistics</b> How many pixels and iterations the interior checks saved in the last
+	 *         finished Mandelbrot render
+	 */
+	InteriorStatistics getLastInteriorStatistics()
+	{
+		return lastInteriorStatistics;
+	}
+
+
+	void setLastInteriorStatistics(InteriorStatistics lastInteriorStatistics)
+	{
+		this.lastInteriorStatistics = lastInteriorStatistics;
+	}
+
+
+	/**
+	 * Snapshots the current bounds, iterations and panel size, and asks the Mandelbrot thread to render them. Nothing
+	 * is requested if none of them have changed since the last request, so it is safe to call whenever any of them
+	 * might have changed
+	 */
+	public void requestMandelbrotRender()
+	{
+		if (getPnlMandelbrot() == null || getPnlMandelbrot().getWidth() <= 0 || getPnlMandelbrot().getHeight() <= 0)
+			return;
+
+		// Snapping the view to the global grid lets it share tiles with every other view that overlaps it
+		Viewport sized = getViewport().withSize(getPnlMandelbrot().getWidth(), getPnlMandelbrot().getHeight()).alignedToGrid();
+		setViewport(sized);
+		ViewState state = new ViewState(sized, getIterations());
+
+		synchronized (this)
+		{
+			if (state.equals(requestedMandelbrotView))
+				return;
+			requestedMandelbrotView = state;
+		}
+		getMandelbrotScheduler().submit(state);
+	}
+
+
+	/**
+	 * Asks the Mandelbrot thread to render the current view even if it has not changed, for when something other than
+	 * the view, such as the render mode, affects the image
+	 */
+	public void forceMandelbrotRender()
+	{
+		synchronized (this)
+		{
+			requestedMandelbrotView = null;
+		}
+		requestMandelbrotRender();
+	}
+
+
+	/**
+	 * Moves the Mandelbrot view by a whole number of pixels at the same scale and asks for it to be rendered. The
+	 * render reuses the part of the image still on screen, so only the newly exposed edges are calculated
+	 * 
+	 * @param dx
+	 *            The number of pixels to move right by
+	 * @param dy
+	 *            The number of pixels to move down by
+	 */
+	public void panMandelbrot(int dx, int dy)
+	{
+		if (getPnlMandelbrot() == null || getPnlMandelbrot().getWidth() <= 0 || getPnlMandelbrot().getHeight() <= 0 || (dx == 0 && dy == 0))
+			return;
+
+		setViewport(getViewport().withSize(getPnlMandelbrot().getWidth(), getPnlMandelbrot().getHeight()).alignedToGrid().panBy(dx, dy));
+		requestMandelbrotRender();
+		getPnlInfo().updateBounds(getxAxisComplex(), getyAxisComplex());
+	}
+
+
+	/**
+	 * Converts the last cursor position in the Mandelbrot panel to the Julia constant, and asks the Julia thread to
+	 * render the Julia set for it. In adaptive mode the set is rendered at the Julia panel's preview resolution while
+	 * the cursor keeps moving, and at full resolution once it has been still for {@link #JULIA_IDLE_MILLIS}. Unless
+	 * the panel only draws outlines, the Julia sets of the next few pixels in the direction the cursor is moving are
+	 * prefetched into the Julia cache, so they are ready if it keeps going that way
+	 */
+	public void requestJuliaRender()
+	{
+		Viewport current = getViewport().withSize(getPnlMandelbrot().getWidth(), getPnlMandelbrot().getHeight());
+		Point cursor = getPnlMandelbrot().getCursorLocation();
+		ComplexNumber juliaConstant = new ComplexNumber(current.realAt(cursor.getX()), current.imaginaryAt(cursor.getY()));
+		setComplexCoordinate(juliaConstant);
+
+		// Inverse iteration is fast enough to draw at full resolution, so only escape time renders need a preview
+		boolean adaptive = isJuliaAdaptive() && getJuliaMode() == JuliaMode.ESCAPE_TIME;
+		Viewport juliaViewport = getPnlJulia().getViewport(adaptive ? getPnlJulia().getPreviewScale() : 1);
+		ViewState juliaView = new ViewState(juliaViewport, getIterations(), juliaConstant.getReal(), juliaConstant.getImaginary());
+		lastJuliaView = juliaView;
+		getJuliaScheduler().submit(juliaView);
+		if (adaptive)
+			juliaIdleTimer.restart();
+
+		if (lastJuliaCursor != null && !cursor.equals(lastJuliaCursor) && getJuliaMode() != JuliaMode.INVERSE_ITERATION)
+		{
+			int dx = cursor.x - lastJuliaCursor.x;
+			int dy = cursor.y - lastJuliaCursor.y;
+			List<ViewState> predicted = new ArrayList<ViewState>();
+			for (int step = 1; step <= JULIA_PREFETCH_STEPS; step++)
+			{
+				int x = cursor.x + step * dx;
+				int y = cursor.y + step * dy;
+				if (x >= 0 && y >= 0 && x < current.getWidth() && y < current.getHeight())
+					predicted.add(new ViewState(juliaViewport, getIterations(), current.realAt(x), current.imaginaryAt(y)));
+			}
+			getPnlJulia().prefetch(predicted);
+		}
+		lastJuliaCursor = cursor;
+	}
+
+
+	/**
+	 * Asks the Julia thread to render the last requested Julia set again at the full resolution of the panel, once the
+	 * cursor has stopped moving
+	 */
+	private void requestFullJuliaRender()
+	{
+		if (lastJuliaView == null)
+			return;
+
+		Viewport juliaViewport = getPnlJulia().getViewport();
+		if (!juliaViewport.equals(lastJuliaView.getViewport()))
+			getJuliaScheduler().submit(new ViewState(juliaViewport, lastJuliaView.getIterations(), lastJuliaView.getJuliaReal(),
+					lastJuliaView.getJuliaImaginary()));
+	}
+
+
+	RenderScheduler<ViewState> getMandelbrotScheduler()
+	{
+		return mandelbrotScheduler;
+	}
+
+
+	RenderScheduler<ViewState> getJuliaScheduler()
+	{
+		return juliaScheduler;
 	}
 
 
@@ -238,27 +636,51 @@ public class GUI extends JFrame
 	}
 
 
-	public Pair<Double, Double> getxAxisComplex()
+	/**
+	 * @return <b>viewport</b> The view of the Mandelbrot set currently on screen, replaced as a whole whenever it
+	 *         changes so it is always consistent
+	 */
+	public Viewport getViewport()
 	{
-		return xAxisComplex;
+		return viewport;
 	}
 
 
-	public void setxAxisComplex(Pair<Double, Double> xAxisComplex)
+	public void setViewport(Viewport viewport)
 	{
-		this.xAxisComplex = xAxisComplex;
+		this.viewport = viewport;
 	}
 
 
-	public Pair<Double, Double> getyAxisComplex()
+	/**
+	 * Moves the view to exactly the given bounds, keeping the current size of the image
+	 * 
+	 * @param xAxisComplex
+	 *            The lower and upper bounds of the real axis
+	 * @param yAxisComplex
+	 *            The lower and upper bounds of the imaginary axis
+	 */
+	public void setComplexBounds(Pair<Double, Double> xAxisComplex, Pair<Double, Double> yAxisComplex)
+	{
+		Viewport current = getViewport();
+		int width = current == null ? 1 : current.getWidth();
+		int height = current == null ? 1 : current.getHeight();
+		setViewport(Viewport.fromBounds(xAxisComplex.getLeft(), xAxisComplex.getRight(), yAxisComplex.getLeft(),
+				yAxisComplex.getRight(), width, height));
+	}
+
+
+	public Pair<Double, Double> getxAxisComplex()
 	{
-		return yAxisComplex;
+		Viewport current = getViewport();
+		return new Pair<Double, Double>(current.getRealMin(), current.getRealMax());
 	}
 
 
-	public void setyAxisComplex(Pair<Double, Double> yAxisComplex)
+	public Pair<Double, Double> getyAxisComplex()
 	{
-		this.yAxisComplex = yAxisComplex;
+		Viewport current = getViewport();
+		return new Pair<Double, Double>(current.getImaginaryMin(), current.getImaginaryMax());
 	}
 
-}
\ No newline at end of file
+}
@@ -26,6 +26,10 @@ import javax.swing.JFormattedTextField;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 
+import mandelbrot.render.Colouring;
+import mandelbrot.render.JuliaMode;
+import mandelbrot.render.Palette;
+import mandelbrot.render.RenderMode;
 import mandelbrot.utilities.Pair;
 
 class InfoPanel extends JPanel implements ActionListener
@@ -56,7 +60,12 @@ class InfoPanel extends JPanel implements ActionListener
 	private JButton btnSubmitIterations;
 	private JButton btnRestoreDefault;
 	private JLabel lblSelectedComplexPoint;
+	private JLabel lblJuliaFrameRate;
 	private JComboBox<String> cmbJuliaFavourites;
+	private JComboBox<RenderMode> cmbRenderMode;
+	private JComboBox<JuliaMode> cmbJuliaMode;
+	private JComboBox<Palette> cmbPalette;
+	private JComboBox<Colouring> cmbColouring;
 
 	public void init()
 	{
@@ -66,6 +75,7 @@ class InfoPanel extends JPanel implements ActionListener
 		lblImaginaryBounds = new JLabel("Imaginary Pair (y):     ");
 		lblIterations = new JLabel("Iterations:     ");
 		lblSelectedComplexPoint = new JLabel("Selected point: ");
+		lblJuliaFrameRate = new JLabel("Julia: 0 fps");
 
 		/*
 		 * try { txtRealLower = new JFormattedTextField(new MaskFormatter("##.##")); txtImaginaryLower = new
@@ -85,6 +95,18 @@ class InfoPanel extends JPanel implements ActionListener
 		txtIterations = new JFormattedTextField(Integer.valueOf(GUI.DEFAULT_ITERATIONS));
 		btnSubmitIterations = new JButton("Submit Iteration Amount");
 		btnRestoreDefault = new JButton("Restore Defaults");
+		cmbRenderMode = new JComboBox<RenderMode>(RenderMode.values());
+		cmbRenderMode.setSelectedItem(gui.getRenderMode());
+		cmbRenderMode.setMaximumSize(new Dimension(150, 25));
+		cmbJuliaMode = new JComboBox<JuliaMode>(JuliaMode.values());
+		cmbJuliaMode.setSelectedItem(gui.getJuliaMode());
+		cmbJuliaMode.setMaximumSize(new Dimension(150, 25));
+		cmbPalette = new JComboBox<Palette>(Palette.PRESETS);
+		cmbPalette.setSelectedItem(gui.getMandelbrotPalette());
+		cmbPalette.setMaximumSize(new Dimension(100, 25));
+		cmbColouring = new JComboBox<Colouring>(Colouring.values());
+		cmbColouring.setSelectedItem(gui.getMandelbrotColouring());
+		cmbColouring.setMaximumSize(new Dimension(100, 25));
 
 		populateImageList();
 
@@ -136,8 +158,18 @@ class InfoPanel extends JPanel implements ActionListener
 		gui.getPnlInfo().add(Box.createHorizontalGlue());
 		gui.getPnlInfo().add(btnRestoreDefault);
 		gui.getPnlInfo().add(Box.createHorizontalGlue());
+		gui.getPnlInfo().add(cmbRenderMode);
+		gui.getPnlInfo().add(Box.createHorizontalGlue());
+		gui.getPnlInfo().add(cmbPalette);
+		gui.getPnlInfo().add(Box.createHorizontalGlue());
+		gui.getPnlInfo().add(cmbColouring);
+		gui.getPnlInfo().add(Box.createHorizontalGlue());
 		gui.getPnlInfo().add(lblSelectedComplexPoint);
 		gui.getPnlInfo().add(Box.createHorizontalGlue());
+		gui.getPnlInfo().add(cmbJuliaMode);
+		gui.getPnlInfo().add(Box.createHorizontalGlue());
+		gui.getPnlInfo().add(lblJuliaFrameRate);
+		gui.getPnlInfo().add(Box.createHorizontalGlue());
 		gui.getPnlInfo().add(getCmbJuliaFavourites());
 		gui.getPnlInfo().add(Box.createHorizontalGlue());
 		gui.getPnlInfo().add(new JLabel("Press P to save a Julia Image"));
@@ -146,6 +178,10 @@ class InfoPanel extends JPanel implements ActionListener
 		btnChangeAxis.addActionListener(this);
 		btnSubmitIterations.addActionListener(this);
 		btnRestoreDefault.addActionListener(this);
+		cmbRenderMode.addActionListener(this);
+		cmbJuliaMode.addActionListener(this);
+		cmbPalette.addActionListener(this);
+		cmbColouring.addActionListener(this);
 		gui.getPnlOuter().add(gui.getPnlInfo());
 	}
 
@@ -203,26 +239,62 @@ class InfoPanel extends JPanel implements ActionListener
 		txtIterations.setText(String.valueOf(iterations));
 	}
 
+	/**
+	 * Shows how many Julia frames were drawn in the last second, the resolution of the latest one, and how the Julia
+	 * render requests have been coalesced
+	 * 
+	 * @param framesPerSecond
+	 *            The number of frames shown in the last second
+	 * @param scale
+	 *            How many times smaller than the panel the latest frame was drawn, 1 for full resolution
+	 * @param scheduler
+	 *            The Julia scheduler's summary of how requests were coalesced, shown as the label's tooltip
+	 */
+	public void updateJuliaFrameRate(int framesPerSecond, int scale, String scheduler)
+	{
+		lblJuliaFrameRate.setText("Julia: " + framesPerSecond + " fps" + (scale > 1 ? " at 1/" + scale : ""));
+		lblJuliaFrameRate.setToolTipText("Julia scheduler: " + scheduler);
+	}
+
 	@Override
 	public void actionPerformed(ActionEvent e)
 	{
 		if (e.getSource() == btnChangeAxis)
 		{
-			gui.setxAxisComplex(new Pair<Double, Double>(Double.parseDouble(txtRealLower.getText()), Double
-					.parseDouble(txtRealUpper.getText())));
-			gui.setyAxisComplex(new Pair<Double, Double>(Double.parseDouble(txtImaginaryLower.getText()), Double
+			gui.setComplexBounds(new Pair<Double, Double>(Double.parseDouble(txtRealLower.getText()), Double.parseDouble(txtRealUpper
+					.getText())), new Pair<Double, Double>(Double.parseDouble(txtImaginaryLower.getText()), Double
 					.parseDouble(txtImaginaryUpper.getText())));
+			gui.requestMandelbrotRender();
 		}
 		else if (e.getSource() == btnSubmitIterations)
 		{
 			gui.setIterations(Integer.parseInt(txtIterations.getText()));
+			gui.requestMandelbrotRender();
 		}
 		else if (e.getSource() == btnRestoreDefault)
 		{
+			gui.setComplexBounds(GUI.DEFAULT_X_AXIS_COMPLEX, GUI.DEFAULT_Y_AXIS_COMPLEX);
+			gui.setIterations(GUI.DEFAULT_ITERATIONS);
 			updateBounds(GUI.DEFAULT_X_AXIS_COMPLEX, GUI.DEFAULT_Y_AXIS_COMPLEX);
 			updateIterations(GUI.DEFAULT_ITERATIONS);
 
-			gui.getPnlMandelbrot().repaint();
+			gui.requestMandelbrotRender();
+		}
+		else if (e.getSource() == cmbRenderMode)
+		{
+			gui.setRenderMode((RenderMode) cmbRenderMode.getSelectedItem());
+		}
+		else if (e.getSource() == cmbJuliaMode)
+		{
+			gui.setJuliaMode((JuliaMode) cmbJuliaMode.getSelectedItem());
+		}
+		else if (e.getSource() == cmbPalette)
+		{
+			gui.setMandelbrotPalette((Palette) cmbPalette.getSelectedItem());
+		}
+		else if (e.getSource() == cmbColouring)
+		{
+			gui.setMandelbrotColouring((Colouring) cmbColouring.getSelectedItem());
 		}
 	}
 
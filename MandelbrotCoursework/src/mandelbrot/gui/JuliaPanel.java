@@ -5,7 +5,6 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
@@ -15,13 +14,31 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
-
-import mandelbrot.maths.ComplexNumber;
-import mandelbrot.maths.Maths;
-import mandelbrot.utilities.Pair;
+import javax.swing.SwingUtilities;
+
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.EscapeTime;
+import mandelbrot.render.Colouring;
+import mandelbrot.render.Framebuffer;
+import mandelbrot.render.FramebufferPool;
+import mandelbrot.render.JuliaMode;
+import mandelbrot.render.Palette;
+import mandelbrot.render.RenderJob;
+import mandelbrot.render.Symmetry;
+import mandelbrot.render.ViewState;
+import mandelbrot.render.Viewport;
 
 class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 {
@@ -33,7 +50,19 @@ class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 	private BufferedImage juliaSavedImage;
 	private BufferedImage juliaImage; // A ring of the 10 most recent Julia images, the most
 										// recent is at index 0
-	private Pair<Double, Double> conversionRatio;
+	private FramebufferPool framebufferPool = new FramebufferPool();
+	private FramebufferPool previewPool = new FramebufferPool();
+	private volatile int previewScale = MIN_PREVIEW_SCALE;
+	private ArrayDeque<Long> frameTimes = new ArrayDeque<Long>();
+	private ExecutorService prefetchExecutor;
+	private volatile long prefetchGeneration;
+	private Set<ViewState> prefetching = Collections.newSetFromMap(new ConcurrentHashMap<ViewState, Boolean>());
+
+	/**
+	 * The preview is drawn at between 1/MIN_PREVIEW_SCALE and 1/MAX_PREVIEW_SCALE of the panel's resolution
+	 */
+	static final int MIN_PREVIEW_SCALE = 4;
+	static final int MAX_PREVIEW_SCALE = 8;
 
 	private static final long serialVersionUID = 1900295689838487856L;
 
@@ -43,12 +72,27 @@ class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 		super();
 		this.gui = gui;
 		this.addMouseListener(this);
+
+		// Prefetching runs on low priority daemon threads, so it only uses cores the renders leave idle
+		if (GUI.JULIA_PREFETCH_THREADS > 0)
+		{
+			prefetchExecutor = Executors.newFixedThreadPool(GUI.JULIA_PREFETCH_THREADS, new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "Julia Prefetcher");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+		}
 	}
 
 
 	/**
-	 * Sets the preferred size of the panel, and calculates the conversion ratio from the panel bounds to the
-	 * complex bounds
+	 * Sets the preferred size of the panel
 	 */
 	public void init()
 	{
@@ -58,7 +102,6 @@ class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 		gui.getPnlJulia().setPreferredSize(new Dimension((int) (gui.getPnlFractal().getWidth() * (0.4)), (int) (gui.getPnlFractal().getHeight())));
 
 		setJuliaImage(new BufferedImage((int) (gui.getPnlFractal().getWidth() * (0.4)), gui.getPnlFractal().getHeight(), gui.getPAINT_TYPE()));
-		setConversionRatio(Maths.calculateRealtoComplexRatio(getWidth(), getHeight(), GUI.DEFAULT_X_AXIS_COMPLEX, GUI.DEFAULT_Y_AXIS_COMPLEX));
 
 		gui.getPnlFractal().add(gui.getPnlJulia());
 	}
@@ -76,8 +119,6 @@ class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 
 		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-		setConversionRatio(Maths.calculateRealtoComplexRatio(getWidth(), getHeight(), GUI.DEFAULT_X_AXIS_COMPLEX, GUI.DEFAULT_X_AXIS_COMPLEX));
-
 		if (gui.favouriteSelected)
 		{
 			super.paintComponent(g2);
@@ -90,8 +131,10 @@ class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 			{
 				super.paintComponent(g2);
 
-				// Fetches and draws the most recently calculated Julia image
-				g2.drawImage(getJuliaImage(), 0, 0, null);
+				// Fetches and draws the most recently calculated Julia image, stretched to fill the panel if it is a
+				// low resolution preview
+				g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g2.drawImage(getJuliaImage(), 0, 0, getWidth(), getHeight(), null);
 
 				gui.getPnlMandelbrot().requestFocusInWindow();
 			}
@@ -101,71 +144,319 @@ class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 
 
 	/**
-	 * Iterates through each pixel in the Julia panel, converting each coordinate into a complex number and then
-	 * determining the colour that pixel should be to draw a Julia set
+	 * Draws the Julia set of the requested view in the current Julia mode. Escape time renders come from the Julia
+	 * cache if the set has been drawn recently or prefetched, otherwise they are calculated and added to the cache. In
+	 * outline preview mode the outline is drawn by inverse iteration and shown first. Inverse iteration is cheap enough
+	 * that its images are never cached
+	 * 
+	 * @param job
+	 *            The render job holding the view to draw
+	 * @return <b>framebuffer</b> A framebuffer from the panel's pool holding the Julia image, or null if the job was
+	 *         cancelled by a newer view
 	 */
-	public BufferedImage paintJuliaSet()
+	public Framebuffer paintJuliaSet(RenderJob<ViewState> job)
 	{
-		int width = getWidth();
-		int height = getHeight();
-		BufferedImage tempImage;
-		ComplexNumber iteratingCoordinate;
+		ViewState state = job.getState();
+		int pixels = state.getWidth() * state.getHeight();
+		FramebufferPool pool = isPreview(state) ? previewPool : framebufferPool;
+		JuliaMode mode = gui.getJuliaMode();
 
-		tempImage = new BufferedImage(width, height, gui.PAINT_TYPE);
+		if (mode == JuliaMode.INVERSE_ITERATION)
+			return paintOutline(pool, job);
 
-		for (int x = 0; x < width; x++)
+		if (mode == JuliaMode.OUTLINE_PREVIEW && !gui.getJuliaCache().contains(state))
 		{
-			for (int y = 0; y < height; y++)
-			{
-				iteratingCoordinate = Maths.convertCoordinateToComplexPlane(new Point(x, y), getConversionRatio(), width, height,
-						GUI.DEFAULT_X_AXIS_COMPLEX, GUI.DEFAULT_Y_AXIS_COMPLEX);
+			// The outline stays on screen until the full image replaces it, even if the cursor moves on first
+			Framebuffer outline = paintOutline(pool, job);
+			if (outline == null)
+				return null;
+			publish(state, outline);
+		}
 
-				tempImage.setRGB(x, y, generateColor(iteratingCoordinate));
+		Framebuffer framebuffer = pool.acquire(state.getWidth(), state.getHeight());
+		float[] cached = gui.getJuliaCache().get(state);
+		if (cached != null)
+		{
+			System.arraycopy(cached, 0, framebuffer.getValues(), 0, pixels);
+			System.arraycopy(cached, pixels, framebuffer.getModuli(), 0, pixels);
+		}
+		else
+		{
+			long start = System.nanoTime();
+			if (!calculateJuliaSet(state, framebuffer.getValues(), framebuffer.getModuli(), job))
+			{
+				pool.release(framebuffer);
+				return null;
 			}
+			if (isPreview(state))
+				adaptPreviewScale(System.nanoTime() - start);
+
+			float[] result = new float[2 * pixels];
+			System.arraycopy(framebuffer.getValues(), 0, result, 0, pixels);
+			System.arraycopy(framebuffer.getModuli(), 0, result, pixels, pixels);
+			gui.getJuliaCache().put(state, result, false);
 		}
 
-		return tempImage;
+		framebuffer.colour(Palette.ROSE, Colouring.SMOOTH, gui.getTileRenderer());
+		return framebuffer;
 
 	}
 
 
 	/**
-	 * Determines the colour for a given pixel in the julia set by adding a negative exponential number to a float
-	 * value each time an iteration is run, until the complex number diverges
+	 * Draws the outline of the Julia set of the requested view by inverse iteration
 	 * 
-	 * @param z
-	 *            The current complex coordinate for drawing the Julia set
-	 * @return <b>color</b> THE RGB value that the current pixel should be set to
+	 * @param pool
+	 *            The pool to take the framebuffer from
+	 * @param job
+	 *            The render job holding the view to draw
+	 * @return <b>framebuffer</b> A framebuffer from the pool holding the outline, or null if the job was cancelled by
+	 *         a newer view
 	 */
-	private int generateColor(ComplexNumber z)
+	private Framebuffer paintOutline(FramebufferPool pool, RenderJob<ViewState> job)
 	{
-		double smoothColor;
-		int color;
-		int maxIterations = gui.getIterations();
-		color = Color.BLACK.getRGB();
+		ViewState state = job.getState();
+		Framebuffer framebuffer = pool.acquire(state.getWidth(), state.getHeight());
+		if (!gui.getInverseIterationRenderer().render(framebuffer, state, job))
+		{
+			pool.release(framebuffer);
+			return null;
+		}
 
-		smoothColor = Math.exp(-(z.modulusSquared())); // e ^ -(abs(z))
+		framebuffer.colour(Palette.ROSE, Colouring.SMOOTH, gui.getTileRenderer());
+		return framebuffer;
+	}
 
-		for (int i = 0; i < maxIterations; i++)
-		{
-			z = z.square().add(gui.getComplexCoordinate());
 
-			// Increments the colour value by this amount for each iteration until the number diverges
-			smoothColor += Math.exp(-z.modulusSquared());
+	/**
+	 * Picks the preview resolution for the next frame from how long the last preview took to calculate. The preview
+	 * drops to the coarser resolution when a frame misses the target frame rate, and goes back to the finer one when
+	 * a frame with four times as many pixels would still comfortably make it
+	 * 
+	 * @param nanos
+	 *            The time the last preview took to calculate
+	 */
+	private void adaptPreviewScale(long nanos)
+	{
+		long frameBudget = 1000000000L / Math.max(1, GUI.JULIA_TARGET_FPS);
+		if (previewScale < MAX_PREVIEW_SCALE && nanos > frameBudget)
+			previewScale *= 2;
+		else if (previewScale > MIN_PREVIEW_SCALE && nanos * 4 < frameBudget * 3 / 4)
+			previewScale /= 2;
+	}
+
+
+	/**
+	 * Shows a finished frame in the panel and counts it towards the frame rate shown in the info panel
+	 * 
+	 * @param state
+	 *            The view the frame was rendered for
+	 * @param framebuffer
+	 *            The finished frame
+	 */
+	void publish(ViewState state, Framebuffer framebuffer)
+	{
+		(isPreview(state) ? previewPool : framebufferPool).publish(framebuffer);
+		setJuliaImage(framebuffer.getImage());
+		repaint();
+
+		long now = System.nanoTime();
+		frameTimes.addLast(now);
+		while (frameTimes.peekFirst() < now - 1000000000L)
+		{
+			frameTimes.removeFirst();
+		}
 
-			if (z.modulusSquared() > 4)
+		final int framesPerSecond = frameTimes.size();
+		final int scale = isPreview(state) ? Math.round(getWidth() / (float) state.getWidth()) : 1;
+		final String scheduler = gui.getJuliaScheduler().toString();
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			@Override
+			public void run()
 			{
-				// Changes the range of smoothColor from [0, maxIterations] to [0, 1]
-				smoothColor = smoothColor / maxIterations;
+				gui.getPnlInfo().updateJuliaFrameRate(framesPerSecond, scale, scheduler);
+			}
+		});
+	}
+
+
+	/**
+	 * @return <b>preview</b> True if the view is drawn at less than the panel's full resolution
+	 */
+	private boolean isPreview(ViewState state)
+	{
+		return state.getWidth() < getWidth() || state.getHeight() < getHeight();
+	}
+
+
+	/**
+	 * Iterates through each pixel of a view, row by row, converting each coordinate into a complex number and then
+	 * determining the smooth value of that pixel of the Julia set
+	 * 
+	 * @param state
+	 *            The view to calculate
+	 * @param values
+	 *            Receives the smooth value of each pixel, row by row
+	 * @param moduli
+	 *            Receives the final |z|^2 of each pixel, in the same order
+	 * @param job
+	 *            The render job the view is being calculated for, or null if it is being prefetched and cannot be
+	 *            cancelled
+	 * @return <b>finished</b> True if every pixel was calculated, false if the job was cancelled first
+	 */
+	private boolean calculateJuliaSet(ViewState state, float[] values, float[] moduli, RenderJob<ViewState> job)
+	{
+		int width = state.getWidth();
+		int height = state.getHeight();
+		Viewport viewport = state.getViewport();
+		EscapeResult escapeResult = new EscapeResult();
+
+		// When the origin is in view, the pixels whose reflection through it is also in view are copied from it
+		Symmetry symmetry = gui.isSymmetry() ? Symmetry.origin(viewport) : null;
+		int yStart = symmetry != null ? symmetry.getComputedStart() : 0;
+		int yEnd = symmetry != null ? symmetry.getComputedEnd() : height;
+
+		for (int y = yStart; y < yEnd; y++)
+		{
+			// Gives up on the image as soon as the cursor has moved somewhere else
+			if (job != null && job.isCancelled())
+				return false;
 
-				// Uses the float value as part of the value for the hue of the pixel, and converts it to an RGB
-				// representation of the colour
-				color = Color.HSBtoRGB((float) (0.95f + 10 * smoothColor), 0.6f, 1.0f);
+			calculateRow(state, y, 0, width, values, moduli, escapeResult);
+			if (job != null)
+				job.addPixelsRendered(width);
+		}
 
-				break;
+		if (symmetry != null)
+		{
+			// Only the columns whose reflection is off the edge of the image are calculated in the copied rows
+			for (int y = symmetry.getMirroredStart(); y < symmetry.getMirroredEnd(); y++)
+			{
+				if (job != null && job.isCancelled())
+					return false;
+
+				calculateRow(state, y, 0, symmetry.getMirroredXStart(), values, moduli, escapeResult);
+				calculateRow(state, y, symmetry.getMirroredXEnd(), width, values, moduli, escapeResult);
 			}
+			symmetry.mirror(values, moduli);
+			if (job != null)
+				job.addPixelsRendered(symmetry.getMirroredPixels());
+		}
+		return true;
+	}
+
+
+	/**
+	 * Determines the smooth value of a run of pixels along one row of a view
+	 * 
+	 * @param state
+	 *            The view being calculated
+	 * @param y
+	 *            The row
+	 * @param xStart
+	 *            The first column, inclusive
+	 * @param xEnd
+	 *            The last column, exclusive
+	 * @param values
+	 *            Receives the smooth value of each pixel, row by row
+	 * @param moduli
+	 *            Receives the final |z|^2 of each pixel, in the same order
+	 * @param escapeResult
+	 *            Scratch space for the escape time kernel, reused between pixels
+	 */
+	private void calculateRow(ViewState state, int y, int xStart, int xEnd, float[] values, float[] moduli, EscapeResult escapeResult)
+	{
+		Viewport viewport = state.getViewport();
+		double imaginary = viewport.imaginaryAt(y);
+		int row = y * state.getWidth();
+		for (int x = xStart; x < xEnd; x++)
+		{
+			values[row + x] = generateSmoothValue(viewport.realAt(x), imaginary, state.getJuliaReal(), state.getJuliaImaginary(), state
+					.getIterations(), escapeResult);
+			moduli[row + x] = (float) escapeResult.getModulusSquared();
+		}
+	}
+
+
+	/**
+	 * Calculates the Julia sets the cursor is expected to reach next on the prefetch threads, and adds them to the
+	 * Julia cache. Predictions made for an earlier cursor position which have not started yet are dropped
+	 * 
+	 * @param states
+	 *            The Julia sets to prefetch, most likely first
+	 */
+	void prefetch(List<ViewState> states)
+	{
+		if (prefetchExecutor == null)
+			return;
+
+		final long generation = ++prefetchGeneration;
+		for (final ViewState state : states)
+		{
+			if (gui.getJuliaCache().contains(state) || !prefetching.add(state))
+				continue;
+
+			prefetchExecutor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						if (generation != prefetchGeneration || gui.getJuliaCache().contains(state))
+							return;
+
+						int pixels = state.getWidth() * state.getHeight();
+						float[] values = new float[pixels];
+						float[] moduli = new float[pixels];
+						calculateJuliaSet(state, values, moduli, null);
+
+						float[] result = Arrays.copyOf(values, 2 * pixels);
+						System.arraycopy(moduli, 0, result, pixels, pixels);
+						gui.getJuliaCache().put(state, result, true);
+					}
+					finally
+					{
+						prefetching.remove(state);
+					}
+				}
+			});
+		}
+	}
+
+
+	/**
+	 * Determines the smooth value for a given pixel in the julia set by adding a negative exponential number to a
+	 * float value each time an iteration is run, until the complex number diverges
+	 * 
+	 * @param zReal
+	 *            The real part of the current complex coordinate for drawing the Julia set
+	 * @param zImaginary
+	 *            The imaginary part of the current complex coordinate
+	 * @param juliaReal
+	 *            The real part of the constant c the Julia set is being drawn for
+	 * @param juliaImaginary
+	 *            The imaginary part of the constant c
+	 * @param maxIterations
+	 *            The iteration limit for the current render
+	 * @param escapeResult
+	 *            Scratch space for the escape time kernel, reused between pixels
+	 * @return <b>smoothColor</b> The value the palette turns into the colour of the pixel, or Palette.INTERIOR if the
+	 *         number does not diverge
+	 */
+	private float generateSmoothValue(double zReal, double zImaginary, double juliaReal, double juliaImaginary, int maxIterations,
+			EscapeResult escapeResult)
+	{
+		float smoothColor = Palette.INTERIOR;
+
+		EscapeTime.julia(zReal, zImaginary, juliaReal, juliaImaginary, maxIterations, escapeResult);
+		if (escapeResult.isEscaped())
+		{
+			// Changes the range of smoothColor from [0, maxIterations] to [0, 1]
+			smoothColor = (float) (escapeResult.getExponentialSum() / maxIterations);
 		}
-		return color;
+		return smoothColor;
 	}
 
 
@@ -292,15 +583,51 @@ class JuliaPanel extends JPanel implements MouseListener, ComponentListener
 	}
 
 
-	public Pair<Double, Double> getConversionRatio()
+	/**
+	 * The Julia panel always shows the default view. It has always used the span of the real axis for both axes,
+	 * which stretches the set vertically, and that is kept so Julia images look the same as they always have. The
+	 * view is moved by less than a quarter of a pixel so the origin lies on a row or exactly between two, which lets
+	 * the rows on one side of it be copied from their reflection through it
+	 * 
+	 * @return <b>viewport</b> The view the Julia set is drawn in at the panel's current size
+	 */
+	Viewport getViewport()
+	{
+		return getViewport(1);
+	}
+
+
+	/**
+	 * @param scale
+	 *            How many times fewer pixels to use along each side than the panel has
+	 * @return <b>viewport</b> The default view at a fraction of the panel's resolution, for previews
+	 */
+	Viewport getViewport(int scale)
+	{
+		double realSpan = GUI.DEFAULT_X_AXIS_COMPLEX.getRight() - GUI.DEFAULT_X_AXIS_COMPLEX.getLeft();
+		int width = Math.max(1, getWidth() / scale);
+		int height = Math.max(1, getHeight() / scale);
+
+		// On the grid every pixel is a whole number of spacings from the origin, so a pixel and its reflection through
+		// the origin have exactly opposite coordinates and the set's symmetry can be copied without changing a pixel
+		return Viewport.fromOrigin(GUI.DEFAULT_X_AXIS_COMPLEX.getLeft(), GUI.DEFAULT_X_AXIS_COMPLEX.getLeft(), realSpan, realSpan, width,
+				height).alignedToGrid();
+	}
+
+
+	/**
+	 * @return <b>previewScale</b> The fraction of the panel's resolution previews are currently drawn at, chosen to
+	 *         hold the target frame rate
+	 */
+	int getPreviewScale()
 	{
-		return conversionRatio;
+		return previewScale;
 	}
 
 
-	public void setConversionRatio(Pair<Double, Double> conversionRatio)
+	FramebufferPool getFramebufferPool()
 	{
-		this.conversionRatio = conversionRatio;
+		return framebufferPool;
 	}
 
 
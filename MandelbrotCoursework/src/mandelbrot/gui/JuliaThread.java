@@ -1,9 +1,9 @@
 package mandelbrot.gui;
 
 
-import java.awt.image.BufferedImage;
-
-import mandelbrot.maths.Maths;
+import mandelbrot.render.Framebuffer;
+import mandelbrot.render.RenderJob;
+import mandelbrot.render.ViewState;
 
 public class JuliaThread extends Thread
 {
@@ -13,43 +13,46 @@ public class JuliaThread extends Thread
 
 	public JuliaThread(GUI gui)
 	{
+		super("Julia Renderer");
 		this.gui = gui;
-		this.setPriority(Thread.MAX_PRIORITY);
+		this.setDaemon(true);
 	}
 
 
 	/**
-	 * Constantly iterates, checking if the flag that the Julia set needs a recalculate is set to true, if true,
-	 * then recalculate the Julia set
+	 * Waits for the scheduler to hand over a Julia constant, renders the Julia set for it, and then waits for the next
+	 * one. Every mouse movement requests a render, so the requests made while a render is running are merged and only
+	 * the latest cursor position is rendered next
 	 * 
 	 * @see java.lang.Thread#run()
 	 */
 	public void run()
 	{
-		while (true)
+		try
 		{
-			if (gui.isJuliaNeedsRecalculate())
+			while (true)
 			{
-				// Sets a flag indicating that the Julia calculation is over
-				gui.setJuliaNeedsRecalculate(false);
-
-				// Sets the complex coordinate used for Julia set calculations to the last position of the cursor in
-				// the Mandelbrot panel
-				gui.setComplexCoordinate(Maths.convertCoordinateToComplexPlane(gui.getPnlMandelbrot().getCursorLocation(), gui.getPnlMandelbrot()
-						.getConversionRatio(), gui.getPnlMandelbrot().getWidth(), gui.getPnlMandelbrot().getHeight(), gui.getxAxisComplex(), gui.getyAxisComplex()));
-
-				// getPnlJulia().setJuliaImage(new BufferedImage(getWidth(), getHeight(), getPAINT_TYPE()));
+				RenderJob<ViewState> job = gui.getJuliaScheduler().take();
 
-				// Generates a Julia set image with the complex coordinate that was set
-				BufferedImage tempImage = gui.getPnlJulia().paintJuliaSet();
+				// Generates a Julia set image with the complex coordinate that was requested
+				Framebuffer framebuffer = gui.getPnlJulia().paintJuliaSet(job);
 
-				// Adds the Julia image just created to a ring, where the most recent image is at index is 0
-				gui.getPnlJulia().setJuliaImage(tempImage);
+				if (framebuffer == null)
+				{
+					// A newer view arrived part way through, so this frame was abandoned
+					gui.getJuliaScheduler().recordCancelled(job);
+					continue;
+				}
+				gui.getJuliaScheduler().recordCompleted(job);
 
-				// Tells the Swing thread to repaint the Julia panel
-				gui.getPnlJulia().repaint();
+				// Shows the frame and tells the Swing thread to repaint the Julia panel
+				gui.getPnlJulia().publish(job.getState(), framebuffer);
 			}
 		}
+		catch (InterruptedException e)
+		{
+			// The GUI is shutting down, let the thread finish
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package mandelbrot.gui;
 
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
@@ -17,13 +18,38 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferedImage;
 import java.text.DecimalFormat;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
 import mandelbrot.maths.ComplexNumber;
+import mandelbrot.maths.DoubleDouble;
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.EscapeTime;
+import mandelbrot.maths.InteriorStatistics;
+import mandelbrot.maths.LaneEscapeTime;
 import mandelbrot.maths.Maths;
-import mandelbrot.utilities.Pair;
+import mandelbrot.maths.Perturbation;
+import mandelbrot.maths.Precision;
+import mandelbrot.maths.ReferenceOrbit;
+import mandelbrot.maths.SeriesApproximation;
+import mandelbrot.render.CachedPixelKernel;
+import mandelbrot.render.Framebuffer;
+import mandelbrot.render.FramebufferPool;
+import mandelbrot.render.OrbitBuffer;
+import mandelbrot.render.Palette;
+import mandelbrot.render.PixelKernel;
+import mandelbrot.render.ProgressiveRenderer;
+import mandelbrot.render.RenderJob;
+import mandelbrot.render.RowKernel;
+import mandelbrot.render.SampledTileKernel;
+import mandelbrot.render.Symmetry;
+import mandelbrot.render.TileCache;
+import mandelbrot.render.TileKernel;
+import mandelbrot.render.TileRenderer;
+import mandelbrot.render.ViewState;
+import mandelbrot.render.Viewport;
 
 class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener, MouseMotionListener, KeyListener
 {
@@ -34,12 +60,24 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 	private GUI gui;
 	private Point cursorLocation;
 	private Point pressLocation;
+	private Point panLocation;
 	private BufferedImage mandelbrotImage;
-	private Pair<Double, Double> conversionRatio;
-	private Rectangle selection = null;
+	private FramebufferPool framebufferPool = new FramebufferPool();
+	private OrbitBuffer orbitBuffer = new OrbitBuffer();
+	private Framebuffer finishedFramebuffer;
+	private ViewState finishedState;
+	private String finishedFormula;
+	private Framebuffer shownFramebuffer;
+	private Viewport shownViewport;
+	private SelectionOverlay selectionOverlay;
 
 	int paintType;
 
+	/**
+	 * The number of pixels the view moves for each press of an arrow key
+	 */
+	static final int KEY_PAN_PIXELS = 64;
+
 	private static final long serialVersionUID = 1900295689838487856L;
 
 
@@ -54,6 +92,10 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 		super();
 		this.gui = gui;
 		paintType = BufferedImage.TYPE_INT_ARGB;
+		selectionOverlay = new SelectionOverlay();
+		this.setLayout(new BorderLayout());
+		this.add(selectionOverlay, BorderLayout.CENTER);
+		this.addComponentListener(this);
 		this.addMouseListener(this);
 		this.addMouseMotionListener(this);
 		this.addKeyListener(this);
@@ -61,15 +103,13 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 
 
 	/**
-	 * Sets the preferred size of the panel and calculates the conversion ratio from it's resoultion to the complex
-	 * plane
+	 * Sets the preferred size of the panel
 	 */
 	public void init()
 	{
 		gui.getPnlMandelbrot().setBackground(Color.GRAY);
 		gui.getPnlMandelbrot().setPreferredSize(
 				new Dimension((int) (gui.getPnlFractal().getWidth() * (0.6)), (int) (gui.getPnlFractal().getHeight())));
-		setConversionRatio(Maths.calculateRealtoComplexRatio(getWidth(), getHeight(), gui.getxAxisComplex(), gui.getyAxisComplex()));
 		gui.getPnlFractal().add(gui.getPnlMandelbrot());
 		setMandelbrotImage(new BufferedImage((int) (gui.getPnlMandelbrot().getPreferredSize().getWidth()), (int) gui.getPnlMandelbrot()
 				.getPreferredSize().getHeight(), paintType));
@@ -77,7 +117,8 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 
 
 	/**
-	 * Draws a selection rectangle if the mouse is being dragged, otherwise calculates and draws the mandelbrot set
+	 * Draws the most recently rendered mandelbrot image. This never starts a render itself, renders are only requested
+	 * when the bounds, iterations or size change, and the selection rectangle is drawn by the overlay on top
 	 * 
 	 * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
 	 */
@@ -90,85 +131,492 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 
 		super.paintComponent(g2);
 
-		setConversionRatio(Maths.calculateRealtoComplexRatio(getWidth(), getHeight(), gui.getxAxisComplex(), gui.getyAxisComplex()));
-		if (selection == null)
+		g2.drawImage(getMandelbrotImage(), 0, 0, null);
+	}
+
+
+	/**
+	 * Splits the requested view into tiles which are rendered in parallel, converting each pixel to a complex
+	 * coordinate and using that to generate a colour which will make up part of the mandelbrot image. In progressive
+	 * mode a coarse preview is shown after each pass, before the exact image is finished, and in Mariani-Silver mode
+	 * rectangles with a single coloured border are filled without being calculated. Views too deep for double
+	 * precision are calculated by perturbation from a reference orbit through their centre
+	 * 
+	 * @param job
+	 *            The render job holding the view to draw
+	 * @return <b>framebuffer</b> A framebuffer from the panel's pool holding the mandelbrot image, or null if the job
+	 *         was cancelled by a newer view
+	 */
+	public Framebuffer paintMandelbrotSet(RenderJob<ViewState> job)
+	{
+		ViewState state = job.getState();
+		int width = state.getWidth();
+		int height = state.getHeight();
+		Viewport viewport = state.getViewport();
+		int maxIterations = state.getIterations();
+		boolean interiorChecks = gui.isInteriorChecks();
+		String formula = interiorChecks ? "mandelbrot" : "mandelbrot without interior checks";
+		FrameReport report = new FrameReport(width, height);
+
+		// Double precision views remember where every orbit stopped, so raising the iteration limit only carries on
+		// the orbits which ran out of iterations rather than starting every pixel again
+		OrbitBuffer orbits = viewport.getPrecision() == Precision.DOUBLE ? orbitBuffer : null;
+		boolean resuming = orbits != null && orbits.prepare(viewport, formula);
+		report.resuming = resuming;
+
+		PixelKernel kernel = viewport.getPrecision() == Precision.DOUBLE ? doublePrecisionKernel(viewport, maxIterations, interiorChecks,
+				orbits, resuming, report) : perturbationKernel(viewport, maxIterations, report);
+
+		// Views on the global grid only calculate the tiles which are not already cached
+		if (report.referenceOrbit == null && viewport.isAligned())
+		{
+			report.cachedKernel = new CachedPixelKernel(kernel, gui.getTileCache(), viewport, maxIterations, formula);
+			kernel = report.cachedKernel;
+		}
+
+		Framebuffer framebuffer = framebufferPool.acquire(width, height);
+		if (framebuffer == finishedFramebuffer)
+			finishedFramebuffer = null;
+		if (framebuffer == shownFramebuffer)
+			shownFramebuffer = null;
+
+		// A view which is the last finished image moved by whole pixels keeps the part still on screen
+		Framebuffer previous = framebufferPool.getDisplayed();
+		int dx = 0;
+		int dy = 0;
+		boolean panned = false;
+		if (previous != null && previous == finishedFramebuffer && formula.equals(finishedFormula)
+				&& maxIterations == finishedState.getIterations() && viewport.isPannedFrom(finishedState.getViewport()))
 		{
-			gui.setMandelbrotNeedsRecalculate(true);
-			// paintMandelbrotSet();
-			g2.drawImage(getMandelbrotImage(), 0, 0, null);
+			dx = (int) (viewport.getRealIndex() - finishedState.getViewport().getRealIndex());
+			dy = (int) (viewport.getImaginaryIndex() - finishedState.getViewport().getImaginaryIndex());
+			panned = (dx != 0 || dy != 0) && Math.abs(dx) < width && Math.abs(dy) < height;
+		}
+
+		boolean finished;
+		if (panned)
+		{
+			finished = renderPanned(framebuffer, previous, kernel, job, dx, dy, report);
 		}
 		else
 		{
-			g2.drawImage(getMandelbrotImage(), 0, 0, null);
-			g2.draw(selection);
+			// Until the new view is calculated, whatever is on screen is scaled up into it so a zoom shows at once
+			boolean transition = previous != null && previous == shownFramebuffer && !viewport.equals(shownViewport)
+					&& showZoomPreview(framebuffer, previous, shownViewport, viewport);
+
+			// A view the real axis crosses only calculates the rows on one side of it, and copies their reflection
+			Symmetry symmetry = gui.isSymmetry() ? Symmetry.conjugate(viewport) : null;
+			finished = renderWholeFrame(framebuffer, kernel, job, transition, symmetry);
+			if (finished && symmetry != null)
+			{
+				symmetry.mirror(framebuffer.getValues(), framebuffer.getModuli());
+				if (orbits != null)
+					orbits.mirror(symmetry);
+				report.symmetry = symmetry;
+			}
+		}
+
+		if (!finished)
+		{
+			framebufferPool.release(framebuffer);
+			return null;
 		}
+		finishedFramebuffer = framebuffer;
+		finishedState = state;
+		finishedFormula = formula;
+		shownFramebuffer = framebuffer;
+		shownViewport = viewport;
+
+		// Colouring is a separate pass over the stored results, so the palette in use now is the one shown even if it
+		// was switched while this frame was being calculated
+		framebuffer.colour(gui.getMandelbrotPalette(), gui.getMandelbrotColouring(), gui.getTileRenderer());
+
+		if (report.cachedKernel != null)
+			report.cachedKernel.storeTiles(framebuffer);
+		report.print(gui.getTileCache());
+		reportStatistics(report.statistics);
+		return framebuffer;
 
 	}
 
 
 	/**
-	 * Iterates through all the pixels of the panel, converting each one to a complex coordinate and using that to
-	 * generate a colour which will make up part of the mandelbrot image
+	 * Builds the kernel for a view double precision can draw. Runs of pixels along a row are iterated four at a time by
+	 * the lane kernel, and single pixels go through the scalar kernel
+	 * 
+	 * @param viewport
+	 *            The view to draw
+	 * @param maxIterations
+	 *            The iteration limit
+	 * @param interiorChecks
+	 *            Whether to skip points proven to be inside the set
+	 * @param orbits
+	 *            Records where every orbit stopped
+	 * @param resuming
+	 *            Whether the orbits recorded for the last render of this view are carried on
+	 * @param report
+	 *            Counts the pixels resumed and the iterations run
+	 * @return <b>kernel</b> The kernel for the view
 	 */
-	public BufferedImage paintMandelbrotSet()
+	private PixelKernel doublePrecisionKernel(final Viewport viewport, final int maxIterations, final boolean interiorChecks,
+			final OrbitBuffer orbits, final boolean resuming, final FrameReport report)
 	{
-		int width = getWidth();
-		int height = getHeight();
-		Pair<Double, Double> xAxisComplex = gui.getxAxisComplex();
-		Pair<Double, Double> yAxisComplex = gui.getyAxisComplex();
-		Pair<Double, Double> conversionRatio = getConversionRatio();
-		BufferedImage tempImage;
+		final InteriorStatistics statistics = report.statistics;
+		final PixelKernel pixelKernel = new PixelKernel()
+		{
+			@Override
+			public float valueAt(int x, int y, EscapeResult escapeResult)
+			{
+				double real = viewport.realAt(x);
+				double imaginary = viewport.imaginaryAt(y);
+				float value;
+				if (resuming && orbits.resume(x, y, real, imaginary, maxIterations, interiorChecks, escapeResult))
+				{
+					value = smoothValue(escapeResult, maxIterations);
+					report.resumedPixels.increment();
+				}
+				else
+					value = generateSmoothValue(real, imaginary, maxIterations, interiorChecks, escapeResult);
+
+				if (orbits != null)
+					orbits.record(x, y, escapeResult);
+				statistics.record(escapeResult, maxIterations);
+				return value;
+			}
+		};
 
-		ComplexNumber complexCoordinate;
+		final double realOffset = viewport.getRealOffset();
+		final double realIndex = viewport.getRealIndex();
+		final double realScale = viewport.getRealSpacing();
+		RowKernel rowKernel = new RowKernel()
+		{
+			@Override
+			public float valueAt(int x, int y, EscapeResult escapeResult)
+			{
+				return pixelKernel.valueAt(x, y, escapeResult);
+			}
+
+
+			@Override
+			public void valuesAt(int first, int stride, int y, int count, float[] values, float[] moduli, LaneEscapeTime lanes,
+					EscapeResult escapeResult)
+			{
+				lanes.mandelbrotRow(realOffset, realScale, realIndex + first, stride, viewport.imaginaryAt(y), count, maxIterations,
+						interiorChecks);
+				for (int k = 0; k < count; k++)
+				{
+					lanes.getResult(k, escapeResult);
+					values[k] = smoothValue(escapeResult, maxIterations);
+					moduli[k] = (float) escapeResult.getModulusSquared();
+					if (orbits != null)
+						orbits.record(first + k * stride, y, escapeResult);
+					statistics.record(escapeResult, maxIterations);
+				}
+			}
+		};
+
+		// The lanes always start their orbits at c, so a resumed render goes through the scalar kernel, which is cheap
+		// for every pixel except those still being iterated
+		return gui.isLaneKernel() && !resuming ? rowKernel : pixelKernel;
+	}
 
-		tempImage = new BufferedImage(width, height, gui.PAINT_TYPE);
 
-		for (int x = 0; x < width; x++)
+	/**
+	 * Builds the kernel for a view past the point where neighbouring pixels can be told apart as doubles. Every pixel
+	 * is iterated as an offset from one reference orbit through the centre of the view, calculated in the cheapest
+	 * precision that is exact
+	 * 
+	 * @param viewport
+	 *            The view to draw
+	 * @param maxIterations
+	 *            The iteration limit
+	 * @param report
+	 *            Receives the reference orbit and series used, and counts the pixels rebased and iterations skipped
+	 * @return <b>kernel</b> The perturbation kernel for the view
+	 */
+	private PixelKernel perturbationKernel(Viewport viewport, final int maxIterations, final FrameReport report)
+	{
+		final int width = viewport.getWidth();
+		final int height = viewport.getHeight();
+		final double realSpacing = viewport.getRealSpacing();
+		final double imaginarySpacing = viewport.getImaginarySpacing();
+		double pixelSpacing = Math.min(Math.abs(realSpacing), Math.abs(imaginarySpacing));
+
+		final ReferenceOrbit orbit = viewport.getPrecision() == Precision.DOUBLE_DOUBLE ? new ReferenceOrbit(DoubleDouble.valueOf(
+				viewport.getCentreReal()), DoubleDouble.valueOf(viewport.getCentreImaginary()), maxIterations) : new ReferenceOrbit(
+				viewport.getCentreReal(), viewport.getCentreImaginary(), maxIterations, pixelSpacing);
+		report.precision = viewport.getPrecision();
+		report.referenceOrbit = orbit;
+
+		// Every pixel lies within the distance from the centre to a corner of the view
+		final SeriesApproximation series = gui.isSeriesApproximation() ? new SeriesApproximation(orbit, maxIterations, Math.hypot(width
+				/ 2.0 * realSpacing, height / 2.0 * imaginarySpacing)) : null;
+		report.seriesApproximation = series;
+
+		return new PixelKernel()
 		{
-			for (int y = 0; y < height; y++)
+			@Override
+			public float valueAt(int x, int y, EscapeResult escapeResult)
 			{
-				complexCoordinate = Maths.convertCoordinateToComplexPlane(new Point(x, y), conversionRatio, width, height, xAxisComplex,
-						yAxisComplex);
-				tempImage.setRGB(x, y, generateColor(complexCoordinate));
+				double dcReal = (x - width / 2.0) * realSpacing;
+				double dcImaginary = (y - height / 2.0) * imaginarySpacing;
+				int rebases;
+				if (series != null)
+				{
+					rebases = Perturbation.mandelbrot(orbit, series, dcReal, dcImaginary, maxIterations, escapeResult);
+					report.skippedIterations.add(escapeResult.getIterations() - escapeResult.getIterationsRun());
+				}
+				else
+					rebases = Perturbation.mandelbrot(orbit, dcReal, dcImaginary, maxIterations, escapeResult);
+
+				if (rebases > 0)
+					report.rebasedPixels.increment();
+				report.statistics.record(escapeResult, maxIterations);
+				return smoothValue(escapeResult, maxIterations);
 			}
-		}
+		};
+	}
 
-		return tempImage;
 
+	/**
+	 * Renders a view which is the last finished image moved by whole pixels. The part still on screen is copied
+	 * across, and only the L shaped strip that has come into view is calculated
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param previous
+	 *            The last finished image
+	 * @param kernel
+	 *            Calculates each pixel
+	 * @param job
+	 *            The render job the frame belongs to
+	 * @param dx
+	 *            How many columns the view has moved right by
+	 * @param dy
+	 *            How many rows the view has moved down by
+	 * @param report
+	 *            Receives the number of pixels calculated
+	 * @return <b>finished</b> True if the strip was rendered, false if the job was cancelled first
+	 */
+	private boolean renderPanned(Framebuffer framebuffer, Framebuffer previous, PixelKernel kernel, RenderJob<ViewState> job, int dx,
+			int dy, FrameReport report)
+	{
+		int width = framebuffer.getWidth();
+		int height = framebuffer.getHeight();
+		framebuffer.copyShifted(previous, dx, dy);
+
+		int xCopyStart = Math.max(0, -dx);
+		int xCopyEnd = Math.min(width, width - dx);
+		int yCopyStart = Math.max(0, -dy);
+		int yCopyEnd = Math.min(height, height - dy);
+		TileRenderer tileRenderer = gui.getTileRenderer();
+		SampledTileKernel tileKernel = new SampledTileKernel(kernel, 1, false);
+		boolean finished = tileRenderer.render(framebuffer, tileKernel, job, 0, 0, width, yCopyStart)
+				&& tileRenderer.render(framebuffer, tileKernel, job, 0, yCopyEnd, width, height)
+				&& tileRenderer.render(framebuffer, tileKernel, job, 0, yCopyStart, xCopyStart, yCopyEnd)
+				&& tileRenderer.render(framebuffer, tileKernel, job, xCopyEnd, yCopyStart, width, yCopyEnd);
+
+		report.panX = dx;
+		report.panY = dy;
+		report.exposedPixels = (long) width * height - (long) (xCopyEnd - xCopyStart) * (yCopyEnd - yCopyStart);
+		return finished;
 	}
 
 
 	/**
-	 * @param complexCoordinate
-	 *            The complex version of the current pixel of the mandelbrot panel
-	 * @return <b>color</b/> The calculated colour of the pixel at the passed coordinate of the mandelbrot image
+	 * Renders every pixel of the frame in the current render mode
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param kernel
+	 *            Calculates each pixel
+	 * @param job
+	 *            The render job the frame belongs to
+	 * @param reveal
+	 *            Whether the frame is already on screen as a preview, in which case the tiled renderer shows each
+	 *            tile as soon as it is finished. The other modes replace the preview with their own passes or the
+	 *            final image
+	 * @param symmetry
+	 *            The reflection the rows outside the band to calculate are copied from once the frame is finished, or
+	 *            null to calculate every row
+	 * @return <b>finished</b> True if the whole frame was rendered, false if the job was cancelled first
 	 */
-	public int generateColor(ComplexNumber complexCoordinate)
+	private boolean renderWholeFrame(Framebuffer framebuffer, PixelKernel kernel, final RenderJob<ViewState> job, boolean reveal,
+			final Symmetry symmetry)
 	{
-		// Sets the default colour to black, if the number does not diverge, the pixel will be black
-		int color = Color.BLACK.getRGB();
-		float nsmooth = 0;
-		ComplexNumber z = complexCoordinate;
-		for (int i = 0; i < gui.getIterations(); i++)
+		int width = framebuffer.getWidth();
+		int yStart = symmetry != null ? symmetry.getComputedStart() : 0;
+		int yEnd = symmetry != null ? symmetry.getComputedEnd() : framebuffer.getHeight();
+
+		boolean finished;
+		switch (gui.getRenderMode())
 		{
-			z = z.square().add(complexCoordinate);
-			if (z.modulusSquared() > 4)
-			{
-				// A function to decide the colour of the pixel, based on how many iterations it took for the
-				// complex number to diverge, if at all
-				// Generates a float between [0, maxIterations]
-				nsmooth = (float) (i + 1 - Math.log(Math.log(z.modulusSquared())) / Math.log(2));
+			case MARIANI_SILVER:
+				finished = gui.getMarianiSilverRenderer().render(framebuffer, kernel, job, 0, yStart, width, yEnd);
+				break;
 
-				// Converts the float to a number between [0,1]
-				nsmooth = nsmooth / gui.getIterations();
+			case PROGRESSIVE:
+				final ProgressiveRenderer progressiveRenderer = gui.getProgressiveRenderer();
+				finished = progressiveRenderer.render(framebuffer, kernel, job, new ProgressiveRenderer.PassListener()
+				{
+					@Override
+					public void passCompleted(Framebuffer framebuffer, int step)
+					{
+						// Shows the preview straight away, the render thread shows the final pass itself
+						if (step > 1)
+						{
+							if (symmetry != null)
+								symmetry.mirror(framebuffer.getValues(), framebuffer.getModuli());
+							framebuffer.colour(gui.getMandelbrotPalette(), gui.getMandelbrotColouring(), gui.getTileRenderer());
+							show(framebuffer, job.getState().getViewport());
+						}
+					}
+				}, 0, yStart, width, yEnd);
+
+				if (finished)
+				{
+					System.out.println("Progressive render: first image " + progressiveRenderer.getLastTimeToFirstImage() / 1000000
+							+ "ms, final image " + progressiveRenderer.getLastTimeToFinalImage() / 1000000 + "ms");
+				}
+				break;
 
-				// Uses the float value as part of the value for the hue of the pixel, and converts it to an RGB
-				// representation of the colour
-				color = Color.HSBtoRGB(0.65f + 5 * nsmooth, 0.6f, 1.0f);
+			default:
+				final TileKernel tileKernel = new SampledTileKernel(kernel, 1, false);
+				if (!reveal)
+				{
+					finished = gui.getTileRenderer().render(framebuffer, tileKernel, job, 0, yStart, width, yEnd);
+					break;
+				}
+
+				// Each finished tile replaces its part of the preview on screen
+				finished = gui.getTileRenderer().render(framebuffer, new TileKernel()
+				{
+					@Override
+					public void renderTile(Framebuffer framebuffer, int xStart, int yStart, int xEnd, int yEnd)
+					{
+						tileKernel.renderTile(framebuffer, xStart, yStart, xEnd, yEnd);
+						framebuffer.colour(xStart, yStart, xEnd, yEnd);
+						repaint(xStart, yStart, xEnd - xStart, yEnd - yStart);
+					}
+				}, job, 0, yStart, width, yEnd);
 				break;
-			}
 		}
-		return color;
+		return finished;
+	}
+
+
+	/**
+	 * Fills a frame with the part of the image on screen that the new view covers, scaled up to fill it, and shows it
+	 * straight away as a stand in for the new view. Nothing is shown if the new view reaches outside the old one, as
+	 * there would be nothing to fill the rest with
+	 * 
+	 * @param framebuffer
+	 *            The frame the new view will be rendered into
+	 * @param previous
+	 *            The frame on screen
+	 * @param previousViewport
+	 *            The view the frame on screen shows
+	 * @param viewport
+	 *            The new view
+	 * @return <b>shown</b> True if the preview was shown
+	 */
+	private boolean showZoomPreview(Framebuffer framebuffer, Framebuffer previous, Viewport previousViewport, Viewport viewport)
+	{
+		// Worked out from the exact centres, so the preview lines up however deep the view is
+		double xScale = viewport.getRealSpacing() / previousViewport.getRealSpacing();
+		double yScale = viewport.getImaginarySpacing() / previousViewport.getImaginarySpacing();
+		double xOrigin = previousViewport.getWidth() / 2.0 + viewport.getCentreReal().subtract(previousViewport.getCentreReal())
+				.doubleValue() / previousViewport.getRealSpacing() - viewport.getWidth() / 2.0 * xScale;
+		double yOrigin = previousViewport.getHeight() / 2.0 + viewport.getCentreImaginary().subtract(previousViewport.getCentreImaginary())
+				.doubleValue() / previousViewport.getImaginarySpacing() - viewport.getHeight() / 2.0 * yScale;
+
+		if (!(xOrigin >= -1 && yOrigin >= -1 && xOrigin + viewport.getWidth() * xScale <= previousViewport.getWidth() + 1 && yOrigin
+				+ viewport.getHeight() * yScale <= previousViewport.getHeight() + 1))
+			return false;
+
+		framebuffer.resample(previous, xOrigin, xScale, yOrigin, yScale);
+		framebuffer.colour(gui.getMandelbrotPalette(), gui.getMandelbrotColouring(), gui.getTileRenderer());
+		show(framebuffer, viewport);
+		return true;
+	}
+
+
+	/**
+	 * Puts a frame on screen before its render has finished
+	 * 
+	 * @param framebuffer
+	 *            The frame to show
+	 * @param viewport
+	 *            The view the frame shows, or is a preview of
+	 */
+	private void show(Framebuffer framebuffer, Viewport viewport)
+	{
+		framebufferPool.publish(framebuffer);
+		shownFramebuffer = framebuffer;
+		shownViewport = viewport;
+		setMandelbrotImage(framebuffer.getImage());
+		repaint();
+	}
+
+
+	/**
+	 * Keeps the interior check statistics of the last finished render and prints them
+	 * 
+	 * @param statistics
+	 *            The statistics of the render that just finished
+	 */
+	private void reportStatistics(InteriorStatistics statistics)
+	{
+		gui.setLastInteriorStatistics(statistics);
+		if (gui.isInteriorChecks())
+			System.out.println(statistics);
+	}
+
+
+	/**
+	 * @param real
+	 *            The real part of the complex version of the current pixel of the mandelbrot panel
+	 * @param imaginary
+	 *            The imaginary part of the complex version of the current pixel of the mandelbrot panel
+	 * @param maxIterations
+	 *            The iteration limit for the current render
+	 * @param interiorChecks
+	 *            Whether to skip points proven to be inside the set by the cardioid, bulb and periodicity checks
+	 * @param escapeResult
+	 *            Scratch space for the escape time kernel, reused between pixels
+	 * @return <b>nsmooth</b> The smooth iteration count of the pixel scaled to [0, 1], which the palette turns into its
+	 *         colour, or Palette.INTERIOR if the number does not diverge
+	 */
+	public float generateSmoothValue(double real, double imaginary, int maxIterations, boolean interiorChecks, EscapeResult escapeResult)
+	{
+		EscapeTime.mandelbrot(real, imaginary, maxIterations, interiorChecks, escapeResult);
+		return smoothValue(escapeResult, maxIterations);
+	}
+
+
+	/**
+	 * @param escapeResult
+	 *            The result of the escape time kernel for a pixel
+	 * @param maxIterations
+	 *            The iteration limit for the current render
+	 * @return <b>nsmooth</b> The smooth iteration count of the pixel scaled to [0, 1], or Palette.INTERIOR if the
+	 *         number does not diverge
+	 */
+	private static float smoothValue(EscapeResult escapeResult, int maxIterations)
+	{
+		float nsmooth = Palette.INTERIOR;
+
+		if (escapeResult.isEscaped())
+		{
+			// A function to decide the colour of the pixel, based on how many iterations it took for the
+			// complex number to diverge, if at all
+			// Generates a float between [0, maxIterations]
+			nsmooth = (float) (escapeResult.getIterations() - Maths.fastLog2Log(escapeResult.getModulusSquared()));
+
+			// Converts the float to a number between [0,1]
+			nsmooth = nsmooth / maxIterations;
+		}
+		return nsmooth;
 	}
 
 
@@ -184,8 +632,8 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 		System.out.println("Click");
 
 		setCursorLocation(new Point(e.getX(), e.getY()));
-		gui.setComplexCoordinate(Maths.convertCoordinateToComplexPlane(getCursorLocation(), getConversionRatio(), getWidth(), getHeight(),
-				gui.getxAxisComplex(), gui.getyAxisComplex()));
+		Viewport viewport = gui.getViewport().withSize(getWidth(), getHeight());
+		gui.setComplexCoordinate(new ComplexNumber(viewport.realAt(e.getX()), viewport.imaginaryAt(e.getY())));
 		DecimalFormat df = new DecimalFormat("#.##");
 
 		String connector;
@@ -206,7 +654,8 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 
 
 	/**
-	 * Starts the drawing of a selection rectangle, used for zooming in on the Mandelbrot set
+	 * Starts the drawing of a selection rectangle with the left button, used for zooming in on the Mandelbrot set, or
+	 * starts dragging the view with the right button
 	 *
 	 * @see java.awt.event.MouseListener#mousePressed(java.awt.event.MouseEvent)
 	 */
@@ -217,7 +666,11 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 		{
 			System.out.println("Press");
 			pressLocation = new Point(e.getX(), e.getY());
-			selection = new Rectangle(pressLocation);
+			selectionOverlay.setSelection(new Rectangle(pressLocation));
+		}
+		else if (e.getButton() == MouseEvent.BUTTON3)
+		{
+			panLocation = new Point(e.getX(), e.getY());
 		}
 	}
 
@@ -234,28 +687,32 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 		int width = getWidth();
 		int height = getHeight();
 
-		if (e.getButton() == MouseEvent.BUTTON1)
+		if (e.getButton() == MouseEvent.BUTTON3)
+			panLocation = null;
+
+		if (e.getButton() == MouseEvent.BUTTON1 && selectionOverlay.getSelection() != null)
 		{
 			System.out.println("Release");
 
+			Rectangle selection = selectionOverlay.getSelection();
+			selectionOverlay.setSelection(null);
+
+			// A click without a drag has nothing to zoom in to
+			if (selection.getWidth() <= 0 || selection.getHeight() <= 0)
+				return;
+
 			int xLower = (int) selection.getMinX();
 			int xUpper = (int) selection.getMaxX();
 
 			int yLower = (int) selection.getMinY();
 			int yUpper = (int) selection.getMaxY();
 
-			ComplexNumber lowerComplex = Maths.convertCoordinateToComplexPlane(new Point(xLower, yLower), getConversionRatio(), width, height,
-					gui.getxAxisComplex(), gui.getyAxisComplex());
-			ComplexNumber upperComplex = Maths.convertCoordinateToComplexPlane(new Point(xUpper, yUpper), getConversionRatio(), width, height,
-					gui.getxAxisComplex(), gui.getyAxisComplex());
+			gui.setViewport(gui.getViewport().withSize(width, height).zoomTo(xLower, yLower, xUpper, yUpper));
 
-			gui.setxAxisComplex(new Pair<Double, Double>(lowerComplex.getReal(), upperComplex.getReal()));
-			gui.setyAxisComplex(new Pair<Double, Double>(lowerComplex.getImaginary(), upperComplex.getImaginary()));
-			
-			gui.getPnlInfo().updateBounds(gui.getxAxisComplex(), gui.getyAxisComplex());
+			gui.requestMandelbrotRender();
 
-			selection = null;
-			gui.getPnlMandelbrot().repaint();
+			// Shows the bounds after they have been snapped to the grid
+			gui.getPnlInfo().updateBounds(gui.getxAxisComplex(), gui.getyAxisComplex());
 		}
 	}
 
@@ -285,15 +742,14 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 
 
 	/**
-	 * Recalculates the conversion ratio for converting from panel coordinates to complex coordinates, whenever the
-	 * panel is resized
+	 * Requests a render at the new size whenever the panel is resized
 	 * 
 	 * @see java.awt.event.ComponentListener#componentResized(java.awt.event.ComponentEvent)
 	 */
 	@Override
 	public void componentResized(ComponentEvent e)
 	{
-		Maths.calculateRealtoComplexRatio(getWidth(), getHeight(), gui.getxAxisComplex(), gui.getyAxisComplex());
+		gui.requestMandelbrotRender();
 	}
 
 
@@ -304,14 +760,25 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 
 
 	/**
-	 * Draws the selection rectangle from where the mouse was first pressed, to the current position of the cursor
+	 * Draws the selection rectangle from where the mouse was first pressed, to the current position of the cursor, or
+	 * while the right button is held moves the view along with the cursor
 	 * 
 	 * @see java.awt.event.MouseMotionListener#mouseDragged(java.awt.event.MouseEvent)
 	 */
 	@Override
 	public void mouseDragged(MouseEvent e)
 	{
-		if (SwingUtilities.isLeftMouseButton(e))
+		if (SwingUtilities.isRightMouseButton(e) && panLocation != null)
+		{
+			// Dragging the image right shows what was to its left
+			int dx = panLocation.x - e.getX();
+			int dy = panLocation.y - e.getY();
+			panLocation = new Point(e.getX(), e.getY());
+			gui.panMandelbrot(dx, dy);
+			return;
+		}
+
+		if (SwingUtilities.isLeftMouseButton(e) && pressLocation != null)
 		{
 			System.out.println("Drag");
 			int x = (int) Math.min(pressLocation.x, e.getX());
@@ -319,8 +786,7 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 			int width = (int) Math.abs(pressLocation.getX() - e.getX());
 			int height = (int) Math.abs(pressLocation.getY() - e.getY());
 
-			selection.setBounds(x, y, width, height);
-			repaint();
+			selectionOverlay.setSelection(new Rectangle(x, y, width, height));
 		}
 	}
 
@@ -335,17 +801,43 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 	{
 		//System.out.println("Move");
 		setCursorLocation(new Point(e.getX(), e.getY()));
-		gui.setJuliaNeedsRecalculate(true);
+		gui.requestJuliaRender();
 	}
 
 
+	/**
+	 * Saves the current Julia image when P is pressed, and moves the view with the arrow keys
+	 * 
+	 * @see java.awt.event.KeyListener#keyPressed(java.awt.event.KeyEvent)
+	 */
 	@Override
 	public void keyPressed(KeyEvent e)
 	{
-		if (e.getKeyCode() == KeyEvent.VK_P)
+		switch (e.getKeyCode())
 		{
-			System.out.println("Print");
-			gui.getPnlJulia().saveJuliaImage();
+			case KeyEvent.VK_P:
+				System.out.println("Print");
+				gui.getPnlJulia().saveJuliaImage();
+				break;
+
+			case KeyEvent.VK_LEFT:
+				gui.panMandelbrot(-KEY_PAN_PIXELS, 0);
+				break;
+
+			case KeyEvent.VK_RIGHT:
+				gui.panMandelbrot(KEY_PAN_PIXELS, 0);
+				break;
+
+			case KeyEvent.VK_UP:
+				gui.panMandelbrot(0, -KEY_PAN_PIXELS);
+				break;
+
+			case KeyEvent.VK_DOWN:
+				gui.panMandelbrot(0, KEY_PAN_PIXELS);
+				break;
+
+			default:
+				break;
 		}
 
 	}
@@ -365,15 +857,23 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 	}
 
 
-	Pair<Double, Double> getConversionRatio()
+	/**
+	 * Recolours the image on screen with the current palette and colouring, without calculating it again
+	 */
+	void recolour()
 	{
-		return conversionRatio;
+		Framebuffer displayed = framebufferPool.getDisplayed();
+		if (displayed != null)
+		{
+			displayed.colour(gui.getMandelbrotPalette(), gui.getMandelbrotColouring(), gui.getTileRenderer());
+			repaint();
+		}
 	}
 
 
-	void setConversionRatio(Pair<Double, Double> conversionRatio)
+	FramebufferPool getFramebufferPool()
 	{
-		this.conversionRatio = conversionRatio;
+		return framebufferPool;
 	}
 
 
@@ -400,4 +900,75 @@ class MandelbrotPanel extends JPanel implements MouseListener, ComponentListener
 		this.cursorLocation = cursorLocation;
 	}
 
-}
\ No newline at end of file
+
+	/**
+	 * What each feature did while one frame was being rendered, printed to the console once the frame is finished
+	 */
+	private static class FrameReport
+	{
+
+		private final long pixels;
+		private final InteriorStatistics statistics = new InteriorStatistics();
+		private final LongAdder resumedPixels = new LongAdder();
+		private final LongAdder rebasedPixels = new LongAdder();
+		private final LongAdder skippedIterations = new LongAdder();
+		private boolean resuming;
+		private Precision precision;
+		private ReferenceOrbit referenceOrbit;
+		private SeriesApproximation seriesApproximation;
+		private CachedPixelKernel cachedKernel;
+		private Symmetry symmetry;
+		private int panX, panY;
+		private long exposedPixels = -1;
+
+
+		FrameReport(int width, int height)
+		{
+			this.pixels = (long) width * height;
+		}
+
+
+		/**
+		 * Prints a line for every feature which took part in the frame
+		 * 
+		 * @param tileCache
+		 *            The tile cache, described after the tiles read from it
+		 */
+		void print(TileCache tileCache)
+		{
+			if (exposedPixels >= 0)
+				System.out.println("Panned by (" + panX + ", " + panY + "): calculated " + exposedPixels + " of " + pixels + " pixels");
+			if (symmetry != null)
+			{
+				System.out.println("Symmetry: copied " + symmetry.getMirroredPixels() + " of " + pixels
+						+ " pixels from their reflection in the real axis");
+			}
+			if (cachedKernel != null)
+			{
+				System.out.println(cachedKernel.getCachedTileCount() + " of " + cachedKernel.getTileCount() + " tiles read from the cache. "
+						+ tileCache);
+			}
+			if (resuming)
+			{
+				System.out.println("Resumed " + resumedPixels.sum() + " pixels from the orbits of the last render of this view, "
+						+ statistics.getIterationsRun() + " iterations run");
+			}
+			if (referenceOrbit != null)
+			{
+				System.out.println("Perturbation: " + precision + " reference orbit of " + referenceOrbit.getLength() + " iterations at "
+						+ referenceOrbit.getPrecision() + " digits in " + referenceOrbit.getCalculationTime() / 1000000 + "ms, "
+						+ rebasedPixels.sum() + " pixels rebased");
+			}
+			if (seriesApproximation != null)
+			{
+				long skipped = skippedIterations.sum();
+				long total = skipped + statistics.getIterationsRun();
+				System.out.println("Series approximation: " + seriesApproximation.getSkippedIterations() + " iterations skipped per pixel, "
+						+ skipped + " of " + total + " in total, " + String.format("%.2f", total / (double) Math.max(1, statistics
+								.getIterationsRun())) + "x fewer iterations than iterating every pixel in full");
+			}
+		}
+
+	}
+
+}
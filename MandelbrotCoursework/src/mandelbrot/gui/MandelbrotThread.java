@@ -1,7 +1,9 @@
 package mandelbrot.gui;
 
 
-import java.awt.image.BufferedImage;
+import mandelbrot.render.Framebuffer;
+import mandelbrot.render.RenderJob;
+import mandelbrot.render.ViewState;
 
 
 public class MandelbrotThread extends Thread
@@ -15,36 +17,49 @@ public class MandelbrotThread extends Thread
 
 	public MandelbrotThread(GUI gui)
 	{
+		super("Mandelbrot Renderer");
 		this.gui = gui;
-		this.setPriority(Thread.MAX_PRIORITY);
+		this.setDaemon(true);
 	}
 
 
 	/**
-	 * Constantly iterates, checking if the flag that the Mandelbrot set needs a recalculate is set to true, if true,
-	 * then recalculate the Mandelbrot set
+	 * Waits for the scheduler to hand over a view of the Mandelbrot set, renders it, and then waits for the next one.
+	 * Views requested while a render is running are merged, so only the latest is rendered next
 	 * 
 	 * @see java.lang.Thread#run()
 	 */
 	public void run()
 	{
-		while (true)
+		try
 		{
-			if (gui.isMandelbrotNeedsRecalculate())
+			while (true)
 			{
-				// Sets a flag indicating that the Julia calculation is over
-				gui.setMandelbrotNeedsRecalculate(false);
+				RenderJob<ViewState> job = gui.getMandelbrotScheduler().take();
 
-				// Generates a Julia set image with the complex coordinate that was set
-				BufferedImage tempImage = gui.getPnlMandelbrot().paintMandelbrotSet();
+				// Generates a Mandelbrot set image for the view that was requested
+				Framebuffer framebuffer = gui.getPnlMandelbrot().paintMandelbrotSet(job);
 
-				// Adds the Julia image just created to a ring, where the most recent image is at index is 0
-				gui.getPnlMandelbrot().setMandelbrotImage(tempImage);
+				if (framebuffer == null)
+				{
+					// A newer view arrived part way through, so this frame was abandoned
+					gui.getMandelbrotScheduler().recordCancelled(job);
+					continue;
+				}
+				gui.getMandelbrotScheduler().recordCompleted(job);
+				System.out.println("Mandelbrot scheduler: " + gui.getMandelbrotScheduler());
 
-				// Tells the Swing thread to repaint the Julia panel
+				gui.getPnlMandelbrot().getFramebufferPool().publish(framebuffer);
+				gui.getPnlMandelbrot().setMandelbrotImage(framebuffer.getImage());
+
+				// Tells the Swing thread to repaint the Mandelbrot panel
 				gui.getPnlMandelbrot().repaint();
 			}
 		}
+		catch (InterruptedException e)
+		{
+			// The GUI is shutting down, let the thread finish
+		}
 	}
 
 }
@@ -0,0 +1,67 @@
+package mandelbrot.gui;
+
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+
+/**
+ * A transparent layer laid over the Mandelbrot panel which draws the zoom selection rectangle. Keeping the rectangle
+ * on its own layer means dragging it only repaints the strip of the panel it moved across, and the panel underneath
+ * just copies that part of its cached image back onto the screen
+ */
+class SelectionOverlay extends JComponent
+{
+
+	private Rectangle selection = null;
+
+	private static final long serialVersionUID = -4460238791716954208L;
+
+
+	SelectionOverlay()
+	{
+		super();
+		setOpaque(false);
+	}
+
+
+	@Override
+	protected void paintComponent(Graphics g)
+	{
+		if (selection != null)
+		{
+			Graphics2D g2 = (Graphics2D) g;
+			g2.draw(selection);
+		}
+	}
+
+
+	Rectangle getSelection()
+	{
+		return selection;
+	}
+
+
+	/**
+	 * Replaces the selection rectangle, repainting only the area covered by the old and new rectangles
+	 * 
+	 * @param selection
+	 *            The new selection, or null to remove it
+	 */
+	void setSelection(Rectangle selection)
+	{
+		Rectangle dirty = this.selection == null ? null : new Rectangle(this.selection);
+		this.selection = selection == null ? null : new Rectangle(selection);
+
+		if (dirty == null)
+			dirty = this.selection;
+		else if (this.selection != null)
+			dirty.add(this.selection);
+
+		if (dirty != null)
+			repaint(dirty.x, dirty.y, dirty.width + 1, dirty.height + 1);
+	}
+
+}
@@ -0,0 +1,210 @@
+package mandelbrot.maths;
+
+
+import java.math.BigDecimal;
+
+/**
+ * A number held as the unevaluated sum of two doubles, hi + lo with |lo| at most half an ulp of hi, which gives about
+ * 106 bits of precision, twice that of a double, for a fraction of the cost of {@link BigDecimal}. The operations
+ * change the number in place and return it, so a kernel can do all of its arithmetic on a few instances it owns
+ * without creating any objects
+ */
+public final class DoubleDouble
+{
+
+	/**
+	 * 2^27 + 1, used to split a double into two halves whose products are exact
+	 */
+	private static final double SPLITTER = 134217729.0;
+
+	private double hi;
+	private double lo;
+
+
+	public DoubleDouble()
+	{
+	}
+
+
+	public DoubleDouble(double value)
+	{
+		set(value);
+	}
+
+
+	/**
+	 * @param value
+	 *            The number to round to the nearest double-double
+	 * @return <b>doubleDouble</b> A new double-double holding the value
+	 */
+	public static DoubleDouble valueOf(BigDecimal value)
+	{
+		DoubleDouble result = new DoubleDouble();
+		double hi = value.doubleValue();
+		double lo = Double.isInfinite(hi) ? 0 : value.subtract(new BigDecimal(hi)).doubleValue();
+		result.hi = hi;
+		result.lo = lo;
+		return result;
+	}
+
+
+	public DoubleDouble set(double value)
+	{
+		hi = value;
+		lo = 0;
+		return this;
+	}
+
+
+	public DoubleDouble set(DoubleDouble value)
+	{
+		hi = value.hi;
+		lo = value.lo;
+		return this;
+	}
+
+
+	/**
+	 * Adds another double-double, keeping the full precision of both parts
+	 */
+	public DoubleDouble add(DoubleDouble value)
+	{
+		return addParts(value.hi, value.lo);
+	}
+
+
+	public DoubleDouble add(double value)
+	{
+		double s = hi + value;
+		double v = s - hi;
+		double e = (hi - (s - v)) + (value - v);
+		e += lo;
+		hi = s + e;
+		lo = e - (hi - s);
+		return this;
+	}
+
+
+	public DoubleDouble subtract(DoubleDouble value)
+	{
+		return addParts(-value.hi, -value.lo);
+	}
+
+
+	/**
+	 * Adds bHi + bLo, as two sums of the high and low parts, each with its rounding error, which are then renormalised
+	 */
+	private DoubleDouble addParts(double bHi, double bLo)
+	{
+		double s = hi + bHi;
+		double v = s - hi;
+		double e = (hi - (s - v)) + (bHi - v);
+
+		double t = lo + bLo;
+		double w = t - lo;
+		double f = (lo - (t - w)) + (bLo - w);
+
+		e += t;
+		double sum = s + e;
+		e = e - (sum - s);
+		e += f;
+		hi = sum + e;
+		lo = e - (hi - sum);
+		return this;
+	}
+
+
+	/**
+	 * Multiplies by another double-double. The product of the high parts is made exact with Dekker's split, since
+	 * Java 8 has no fused multiply add
+	 */
+	public DoubleDouble multiply(DoubleDouble value)
+	{
+		double p = hi * value.hi;
+		double e = productError(hi, value.hi, p);
+		e += hi * value.lo + lo * value.hi;
+		hi = p + e;
+		lo = e - (hi - p);
+		return this;
+	}
+
+
+	public DoubleDouble multiply(double value)
+	{
+		double p = hi * value;
+		double e = productError(hi, value, p);
+		e += lo * value;
+		hi = p + e;
+		lo = e - (hi - p);
+		return this;
+	}
+
+
+	public DoubleDouble square()
+	{
+		double p = hi * hi;
+		double e = productError(hi, hi, p);
+		e += 2 * hi * lo;
+		hi = p + e;
+		lo = e - (hi - p);
+		return this;
+	}
+
+
+	/**
+	 * Multiplies by a power of two, which is exact
+	 */
+	public DoubleDouble scale(double powerOfTwo)
+	{
+		hi *= powerOfTwo;
+		lo *= powerOfTwo;
+		return this;
+	}
+
+
+	/**
+	 * @return <b>error</b> The rounding error of the double product p = a * b, so that a * b = p + error exactly
+	 */
+	private static double productError(double a, double b, double p)
+	{
+		double t = SPLITTER * a;
+		double aHi = t - (t - a);
+		double aLo = a - aHi;
+		t = SPLITTER * b;
+		double bHi = t - (t - b);
+		double bLo = b - bHi;
+		return ((aHi * bHi - p) + aHi * bLo + aLo * bHi) + aLo * bLo;
+	}
+
+
+	public double doubleValue()
+	{
+		return hi + lo;
+	}
+
+
+	public BigDecimal toBigDecimal()
+	{
+		return new BigDecimal(hi).add(new BigDecimal(lo));
+	}
+
+
+	public double getHi()
+	{
+		return hi;
+	}
+
+
+	public double getLo()
+	{
+		return lo;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return toBigDecimal().toString();
+	}
+
+}
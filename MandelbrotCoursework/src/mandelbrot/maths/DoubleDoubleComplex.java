@@ -0,0 +1,73 @@
+package mandelbrot.maths;
+
+/**
+ * A complex number with {@link DoubleDouble} parts. Like DoubleDouble the operations work in place, using scratch
+ * space held by the instance, so iterating with it creates no objects
+ */
+public final class DoubleDoubleComplex
+{
+
+	private final DoubleDouble real = new DoubleDouble();
+	private final DoubleDouble imaginary = new DoubleDouble();
+	private final DoubleDouble scratch = new DoubleDouble();
+
+
+	public DoubleDoubleComplex set(DoubleDouble real, DoubleDouble imaginary)
+	{
+		this.real.set(real);
+		this.imaginary.set(imaginary);
+		return this;
+	}
+
+
+	public DoubleDoubleComplex set(DoubleDoubleComplex value)
+	{
+		real.set(value.real);
+		imaginary.set(value.imaginary);
+		return this;
+	}
+
+
+	/**
+	 * (x+yi)^2 = (x^2 - y^2) + 2xyi
+	 */
+	public DoubleDoubleComplex square()
+	{
+		scratch.set(real).multiply(imaginary).scale(2);
+		real.square().subtract(imaginary.square());
+		imaginary.set(scratch);
+		return this;
+	}
+
+
+	public DoubleDoubleComplex add(DoubleDoubleComplex value)
+	{
+		real.add(value.real);
+		imaginary.add(value.imaginary);
+		return this;
+	}
+
+
+	/**
+	 * @return <b>modulusSquared</b> |z|^2 rounded to a double, which is all an escape test needs
+	 */
+	public double modulusSquared()
+	{
+		double x = real.doubleValue();
+		double y = imaginary.doubleValue();
+		return x * x + y * y;
+	}
+
+
+	public DoubleDouble getReal()
+	{
+		return real;
+	}
+
+
+	public DoubleDouble getImaginary()
+	{
+		return imaginary;
+	}
+
+}
@@ -0,0 +1,139 @@
+package mandelbrot.maths;
+
+/**
+ * Holds the raw output of one run of an escape time kernel. A single instance is meant to be reused for every pixel a
+ * thread calculates, so that no objects are created inside the render loops
+ */
+public class EscapeResult
+{
+
+	private boolean escaped;
+	private int iterations;
+	private int iterationsRun;
+	private int interiorCheck;
+	private double modulusSquared;
+	private double exponentialSum;
+	private double zReal;
+	private double zImaginary;
+
+
+	/**
+	 * Stores the state of the orbit at the point the kernel stopped iterating
+	 *
+	 * @param escaped
+	 *            Whether the orbit left the bailout radius
+	 * @param iterations
+	 *            The number of iterations that were run, including the one that escaped, or the iteration limit if the
+	 *            point did not escape
+	 * @param iterationsRun
+	 *            The number of iterations actually calculated, which is less than the iteration limit when an
+	 *            interior check proved the point never escapes
+	 * @param interiorCheck
+	 *            Which of the EscapeTime.INTERIOR_ checks stopped the iteration
+	 * @param zReal
+	 *            The real part of the final z
+	 * @param zImaginary
+	 *            The imaginary part of the final z
+	 * @param modulusSquared
+	 *            |z|^2 of the final z
+	 * @param exponentialSum
+	 *            The sum of e^-|z|^2 over the orbit, only calculated by the Julia kernel
+	 */
+	void set(boolean escaped, int iterations, int iterationsRun, int interiorCheck, double zReal, double zImaginary, double modulusSquared,
+			double exponentialSum)
+	{
+		this.escaped = escaped;
+		this.iterations = iterations;
+		this.iterationsRun = iterationsRun;
+		this.interiorCheck = interiorCheck;
+		this.zReal = zReal;
+		this.zImaginary = zImaginary;
+		this.modulusSquared = modulusSquared;
+		this.exponentialSum = exponentialSum;
+	}
+
+
+	/**
+	 * Stores a result read back from a cache, which only keeps whether the orbit escaped and its final |z|^2. The
+	 * iteration counts and final z are left at 0
+	 *
+	 * @param escaped
+	 *            Whether the orbit left the bailout radius
+	 * @param modulusSquared
+	 *            |z|^2 of the final z
+	 */
+	public void setCached(boolean escaped, double modulusSquared)
+	{
+		set(escaped, 0, 0, EscapeTime.INTERIOR_NONE, 0, 0, modulusSquared, 0);
+	}
+
+
+	/**
+	 * Stores a result carried over from an earlier calculation of the same point, none of whose iterations are run
+	 * again. |z|^2 is worked out from z the same way the kernels do, so it matches theirs exactly
+	 *
+	 * @param escaped
+	 *            Whether the orbit left the bailout radius
+	 * @param iterations
+	 *            The number of iterations the orbit took to escape, or the iteration limit if it did not
+	 * @param interiorCheck
+	 *            Which of the EscapeTime.INTERIOR_ checks stopped the iteration
+	 * @param zReal
+	 *            The real part of the final z
+	 * @param zImaginary
+	 *            The imaginary part of the final z
+	 */
+	public void setResumed(boolean escaped, int iterations, int interiorCheck, double zReal, double zImaginary)
+	{
+		set(escaped, iterations, 0, interiorCheck, zReal, zImaginary, zReal * zReal + zImaginary * zImaginary, 0);
+	}
+
+
+	public boolean isEscaped()
+	{
+		return escaped;
+	}
+
+
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+
+	public int getIterationsRun()
+	{
+		return iterationsRun;
+	}
+
+
+	public int getInteriorCheck()
+	{
+		return interiorCheck;
+	}
+
+
+	public double getModulusSquared()
+	{
+		return modulusSquared;
+	}
+
+
+	public double getExponentialSum()
+	{
+		return exponentialSum;
+	}
+
+
+	public double getzReal()
+	{
+		return zReal;
+	}
+
+
+	public double getzImaginary()
+	{
+		return zImaginary;
+	}
+
+}
@@ -0,0 +1,232 @@
+package mandelbrot.maths;
+
+/**
+ * Escape time kernels for the Mandelbrot and Julia sets. The orbit is kept in primitive doubles rather than
+ * {@link ComplexNumber} objects, so iterating a pixel creates no garbage
+ */
+public final class EscapeTime
+{
+
+	public static final double BAILOUT_SQUARED = 4;
+
+	/**
+	 * Two points of an orbit closer than this in both parts are treated as the same point of a cycle
+	 */
+	public static final double PERIODICITY_TOLERANCE = 1e-13;
+
+	public static final int INTERIOR_NONE = 0;
+	public static final int INTERIOR_CARDIOID = 1;
+	public static final int INTERIOR_BULB = 2;
+	public static final int INTERIOR_PERIODIC = 3;
+
+
+	private EscapeTime()
+	{
+	}
+
+
+	/**
+	 * Iterates z = z^2 + c, starting from z = c, until |z|^2 passes the bailout or the iteration limit is reached
+	 *
+	 * @param cReal
+	 *            The real part of c
+	 * @param cImaginary
+	 *            The imaginary part of c
+	 * @param maxIterations
+	 *            The iteration limit
+	 * @param result
+	 *            Receives the state of the orbit when iteration stopped
+	 * @return <b>iterations</b> The number of iterations run before escaping, or maxIterations if the point never escaped
+	 */
+	public static int mandelbrot(double cReal, double cImaginary, int maxIterations, EscapeResult result)
+	{
+		double x = cReal;
+		double y = cImaginary;
+		double xSquared = x * x;
+		double ySquared = y * y;
+
+		for (int i = 0; i < maxIterations; i++)
+		{
+			// (x+yi)^2 + c = (x^2 - y^2 + cReal) + (2xy + cImaginary)i
+			y = 2 * x * y + cImaginary;
+			x = xSquared - ySquared + cReal;
+			xSquared = x * x;
+			ySquared = y * y;
+
+			if (xSquared + ySquared > BAILOUT_SQUARED)
+			{
+				result.set(true, i + 1, i + 1, INTERIOR_NONE, x, y, xSquared + ySquared, 0);
+				return i + 1;
+			}
+		}
+		result.set(false, maxIterations, maxIterations, INTERIOR_NONE, x, y, xSquared + ySquared, 0);
+		return maxIterations;
+	}
+
+
+	/**
+	 * Iterates the Mandelbrot orbit like {@link #mandelbrot(double, double, int, EscapeResult)}, but first tests
+	 * whether c lies in the main cardioid or the period 2 bulb, and while iterating watches for the orbit falling into
+	 * a cycle using Brent's method. Points caught by any of these checks are inside the set, so they are reported as
+	 * not escaping without running the rest of the iterations
+	 *
+	 * @param cReal
+	 *            The real part of c
+	 * @param cImaginary
+	 *            The imaginary part of c
+	 * @param maxIterations
+	 *            The iteration limit
+	 * @param interiorChecks
+	 *            Whether to run the interior checks, if false this is the same as the plain kernel
+	 * @param result
+	 *            Receives the state of the orbit when iteration stopped, including which check caught it
+	 * @return <b>iterations</b> The number of iterations run before escaping, or maxIterations if the point never escaped
+	 */
+	public static int mandelbrot(double cReal, double cImaginary, int maxIterations, boolean interiorChecks, EscapeResult result)
+	{
+		if (!interiorChecks)
+			return mandelbrot(cReal, cImaginary, maxIterations, result);
+
+		double ySquared = cImaginary * cImaginary;
+
+		// Main cardioid: q(q + (x - 1/4)) <= y^2 / 4, where q = (x - 1/4)^2 + y^2
+		double xShifted = cReal - 0.25;
+		double q = xShifted * xShifted + ySquared;
+		if (q * (q + xShifted) <= 0.25 * ySquared)
+		{
+			result.set(false, maxIterations, 0, INTERIOR_CARDIOID, cReal, cImaginary, cReal * cReal + ySquared, 0);
+			return maxIterations;
+		}
+
+		// Period 2 bulb: (x + 1)^2 + y^2 <= 1/16
+		if ((cReal + 1) * (cReal + 1) + ySquared <= 0.0625)
+		{
+			result.set(false, maxIterations, 0, INTERIOR_BULB, cReal, cImaginary, cReal * cReal + ySquared, 0);
+			return maxIterations;
+		}
+
+		return mandelbrot(cReal, cImaginary, cReal, cImaginary, 0, maxIterations, true, result);
+	}
+
+
+	/**
+	 * Carries on iterating the Mandelbrot orbit of c from a point it reached earlier, so an orbit that ran out of
+	 * iterations under a lower limit does not have to be calculated again from the start. The arithmetic is the same
+	 * as the kernels above, so the result is exactly the one they would give with the new limit, apart from where
+	 * the periodicity check first notices a cycle. The cardioid and bulb checks are not repeated
+	 *
+	 * @param cReal
+	 *            The real part of c
+	 * @param cImaginary
+	 *            The imaginary part of c
+	 * @param zReal
+	 *            The real part of z after the iterations already run
+	 * @param zImaginary
+	 *            The imaginary part of z after the iterations already run
+	 * @param iterations
+	 *            The number of iterations already run, 0 if z is c
+	 * @param maxIterations
+	 *            The iteration limit
+	 * @param interiorChecks
+	 *            Whether to watch for the orbit falling into a cycle
+	 * @param result
+	 *            Receives the state of the orbit when iteration stopped, with only the iterations run by this call
+	 *            counted as run
+	 * @return <b>iterations</b> The number of iterations run before escaping, or maxIterations if the point never escaped
+	 */
+	public static int mandelbrot(double cReal, double cImaginary, double zReal, double zImaginary, int iterations, int maxIterations,
+			boolean interiorChecks, EscapeResult result)
+	{
+		double x = zReal;
+		double y = zImaginary;
+		double xSquared = x * x;
+		double ySquared = y * y;
+
+		// Brent's cycle detection, the saved point is moved on every time the distance since it was saved reaches the
+		// next power of two, so a cycle of any length is eventually caught
+		double xSaved = x;
+		double ySaved = y;
+		int stepsSinceSave = 0;
+		int saveInterval = 1;
+
+		for (int i = iterations; i < maxIterations; i++)
+		{
+			y = 2 * x * y + cImaginary;
+			x = xSquared - ySquared + cReal;
+			xSquared = x * x;
+			ySquared = y * y;
+
+			if (xSquared + ySquared > BAILOUT_SQUARED)
+			{
+				result.set(true, i + 1, i + 1 - iterations, INTERIOR_NONE, x, y, xSquared + ySquared, 0);
+				return i + 1;
+			}
+
+			if (interiorChecks)
+			{
+				if (Math.abs(x - xSaved) < PERIODICITY_TOLERANCE && Math.abs(y - ySaved) < PERIODICITY_TOLERANCE)
+				{
+					result.set(false, maxIterations, i + 1 - iterations, INTERIOR_PERIODIC, x, y, xSquared + ySquared, 0);
+					return maxIterations;
+				}
+
+				if (++stepsSinceSave == saveInterval)
+				{
+					xSaved = x;
+					ySaved = y;
+					stepsSinceSave = 0;
+					saveInterval *= 2;
+				}
+			}
+		}
+		result.set(false, maxIterations, Math.max(0, maxIterations - iterations), INTERIOR_NONE, x, y, xSquared + ySquared, 0);
+		return maxIterations;
+	}
+
+
+	/**
+	 * Iterates z = z^2 + c, starting from the given z, until |z|^2 passes the bailout or the iteration limit is
+	 * reached. Also sums e^-|z|^2 over every point of the orbit, which the Julia panel uses for smooth colouring
+	 *
+	 * @param zReal
+	 *            The real part of the starting z
+	 * @param zImaginary
+	 *            The imaginary part of the starting z
+	 * @param cReal
+	 *            The real part of the Julia constant
+	 * @param cImaginary
+	 *            The imaginary part of the Julia constant
+	 * @param maxIterations
+	 *            The iteration limit
+	 * @param result
+	 *            Receives the state of the orbit when iteration stopped
+	 * @return <b>iterations</b> The number of iterations run before escaping, or maxIterations if the point never escaped
+	 */
+	public static int julia(double zReal, double zImaginary, double cReal, double cImaginary, int maxIterations, EscapeResult result)
+	{
+		double x = zReal;
+		double y = zImaginary;
+		double xSquared = x * x;
+		double ySquared = y * y;
+		double exponentialSum = Maths.fastNegativeExp(xSquared + ySquared);
+
+		for (int i = 0; i < maxIterations; i++)
+		{
+			y = 2 * x * y + cImaginary;
+			x = xSquared - ySquared + cReal;
+			xSquared = x * x;
+			ySquared = y * y;
+
+			exponentialSum += Maths.fastNegativeExp(xSquared + ySquared);
+
+			if (xSquared + ySquared > BAILOUT_SQUARED)
+			{
+				result.set(true, i + 1, i + 1, INTERIOR_NONE, x, y, xSquared + ySquared, exponentialSum);
+				return i + 1;
+			}
+		}
+		result.set(false, maxIterations, maxIterations, INTERIOR_NONE, x, y, xSquared + ySquared, exponentialSum);
+		return maxIterations;
+	}
+
+}
@@ -0,0 +1,120 @@
+package mandelbrot.maths;
+
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how much work the interior checks of the Mandelbrot kernel saved over a render. Safe to record into from
+ * several render threads at once
+ */
+public class InteriorStatistics
+{
+
+	private final LongAdder pixels = new LongAdder();
+	private final LongAdder iterationsRun = new LongAdder();
+	private final LongAdder cardioidPixels = new LongAdder();
+	private final LongAdder cardioidIterationsSaved = new LongAdder();
+	private final LongAdder bulbPixels = new LongAdder();
+	private final LongAdder bulbIterationsSaved = new LongAdder();
+	private final LongAdder periodicPixels = new LongAdder();
+	private final LongAdder periodicIterationsSaved = new LongAdder();
+
+
+	/**
+	 * Adds the result of one pixel to the totals
+	 * 
+	 * @param result
+	 *            The result of the kernel for the pixel
+	 * @param maxIterations
+	 *            The iteration limit the pixel was calculated with
+	 */
+	public void record(EscapeResult result, int maxIterations)
+	{
+		pixels.increment();
+		iterationsRun.add(result.getIterationsRun());
+
+		int saved = maxIterations - result.getIterationsRun();
+		switch (result.getInteriorCheck())
+		{
+			case EscapeTime.INTERIOR_CARDIOID:
+				cardioidPixels.increment();
+				cardioidIterationsSaved.add(saved);
+				break;
+			case EscapeTime.INTERIOR_BULB:
+				bulbPixels.increment();
+				bulbIterationsSaved.add(saved);
+				break;
+			case EscapeTime.INTERIOR_PERIODIC:
+				periodicPixels.increment();
+				periodicIterationsSaved.add(saved);
+				break;
+			default:
+				break;
+		}
+	}
+
+
+	public long getPixels()
+	{
+		return pixels.sum();
+	}
+
+
+	public long getIterationsRun()
+	{
+		return iterationsRun.sum();
+	}
+
+
+	public long getCardioidPixels()
+	{
+		return cardioidPixels.sum();
+	}
+
+
+	public long getCardioidIterationsSaved()
+	{
+		return cardioidIterationsSaved.sum();
+	}
+
+
+	public long getBulbPixels()
+	{
+		return bulbPixels.sum();
+	}
+
+
+	public long getBulbIterationsSaved()
+	{
+		return bulbIterationsSaved.sum();
+	}
+
+
+	public long getPeriodicPixels()
+	{
+		return periodicPixels.sum();
+	}
+
+
+	public long getPeriodicIterationsSaved()
+	{
+		return periodicIterationsSaved.sum();
+	}
+
+
+	public long getIterationsSaved()
+	{
+		return getCardioidIterationsSaved() + getBulbIterationsSaved() + getPeriodicIterationsSaved();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return "Interior checks: " + getPixels() + " pixels, " + getIterationsRun() + " iterations run, " + getIterationsSaved()
+				+ " saved (cardioid " + getCardioidPixels() + " pixels/" + getCardioidIterationsSaved() + " iterations, bulb "
+				+ getBulbPixels() + "/" + getBulbIterationsSaved() + ", periodic " + getPeriodicPixels() + "/"
+				+ getPeriodicIterationsSaved() + ")";
+	}
+
+}
@@ -0,0 +1,416 @@
+package mandelbrot.maths;
+
+/**
+ * Iterates the Mandelbrot orbits of a row of points four at a time, in the shape a SIMD unit runs them. Each of the
+ * four lanes keeps its orbit in local variables and every lane does the same arithmetic on every pass of the loop, so
+ * the four independent multiply chains overlap in the processor instead of waiting on each other like the single
+ * orbit of {@link EscapeTime} does. A per lane mask records which lanes are still running, and as soon as a lane's
+ * point escapes, or is caught by an interior check, the lane is given the next point of the row, so no lane sits idle
+ * waiting for the slowest point of a batch.
+ * <p>
+ * The results are the same, bit for bit, as {@link EscapeTime#mandelbrot(double, double, int, boolean, EscapeResult)}.
+ * An instance holds the results of the last row, so each render thread needs its own
+ */
+public class LaneEscapeTime
+{
+
+	public static final int LANES = 4;
+
+	private double[] cReal = new double[0];
+	private boolean[] escaped = new boolean[0];
+	private int[] iterations = new int[0];
+	private int[] iterationsRun = new int[0];
+	private int[] interiorCheck = new int[0];
+	private double[] zReal = new double[0];
+	private double[] zImaginary = new double[0];
+	private double[] modulusSquared = new double[0];
+
+
+	/**
+	 * Runs the Mandelbrot kernel for the pixels x = first + k * stride of one row, for k from 0 to count - 1, where
+	 * pixel x lies at c = (x * realScale + realOrigin) + imaginary i. This is the same conversion the panels use, so
+	 * the points are exactly the ones the scalar kernel would be given. The result of each point is read back
+	 * afterwards with {@link #getResult(int, EscapeResult)}
+	 *
+	 * @param realOrigin
+	 *            The real part of pixel column 0
+	 * @param realScale
+	 *            The distance along the real axis between neighbouring pixels
+	 * @param first
+	 *            The column of the first pixel, a whole number which can be larger than an int when the columns are
+	 *            counted on a grid covering the whole plane
+	 * @param stride
+	 *            The distance in pixels between the columns of the batch
+	 * @param imaginary
+	 *            The imaginary part shared by every point
+	 * @param count
+	 *            The number of points
+	 * @param maxIterations
+	 *            The iteration limit
+	 * @param interiorChecks
+	 *            Whether to run the cardioid, bulb and periodicity checks
+	 */
+	public void mandelbrotRow(double realOrigin, double realScale, double first, int stride, double imaginary, int count, int maxIterations,
+			boolean interiorChecks)
+	{
+		ensureCapacity(count);
+		for (int k = 0; k < count; k++)
+		{
+			cReal[k] = (first + k * stride) * realScale + realOrigin;
+		}
+
+		final double ci = imaginary;
+		final double ciSquared = ci * ci;
+		final double tolerance = EscapeTime.PERIODICITY_TOLERANCE;
+
+		// The point each lane is iterating, or -1 once the row has run out of points for it
+		int p0 = -1, p1 = -1, p2 = -1, p3 = -1;
+		double c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+		double x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+		double y0 = 0, y1 = 0, y2 = 0, y3 = 0;
+		double xx0 = 0, xx1 = 0, xx2 = 0, xx3 = 0;
+		double yy0 = 0, yy1 = 0, yy2 = 0, yy3 = 0;
+		int n0 = 0, n1 = 0, n2 = 0, n3 = 0;
+
+		// Brent's cycle detection, see EscapeTime, with a saved point and schedule for each lane
+		double sx0 = 0, sx1 = 0, sx2 = 0, sx3 = 0;
+		double sy0 = 0, sy1 = 0, sy2 = 0, sy3 = 0;
+		int steps0 = 0, steps1 = 0, steps2 = 0, steps3 = 0;
+		int interval0 = 1, interval1 = 1, interval2 = 1, interval3 = 1;
+
+		int next = nextPoint(0, count, maxIterations, interiorChecks, ci);
+		int running = 0;
+
+		if (next < count)
+		{
+			p0 = next;
+			c0 = cReal[next];
+			x0 = sx0 = c0;
+			y0 = sy0 = ci;
+			xx0 = c0 * c0;
+			yy0 = ciSquared;
+			running++;
+			next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+		}
+		if (next < count)
+		{
+			p1 = next;
+			c1 = cReal[next];
+			x1 = sx1 = c1;
+			y1 = sy1 = ci;
+			xx1 = c1 * c1;
+			yy1 = ciSquared;
+			running++;
+			next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+		}
+		if (next < count)
+		{
+			p2 = next;
+			c2 = cReal[next];
+			x2 = sx2 = c2;
+			y2 = sy2 = ci;
+			xx2 = c2 * c2;
+			yy2 = ciSquared;
+			running++;
+			next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+		}
+		if (next < count)
+		{
+			p3 = next;
+			c3 = cReal[next];
+			x3 = sx3 = c3;
+			y3 = sy3 = ci;
+			xx3 = c3 * c3;
+			yy3 = ciSquared;
+			running++;
+			next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+		}
+
+		while (running > 0)
+		{
+			// One iteration of every lane, lanes without a point iterate harmlessly on whatever they last held
+			y0 = 2 * x0 * y0 + ci;
+			x0 = xx0 - yy0 + c0;
+			xx0 = x0 * x0;
+			yy0 = y0 * y0;
+			n0++;
+
+			y1 = 2 * x1 * y1 + ci;
+			x1 = xx1 - yy1 + c1;
+			xx1 = x1 * x1;
+			yy1 = y1 * y1;
+			n1++;
+
+			y2 = 2 * x2 * y2 + ci;
+			x2 = xx2 - yy2 + c2;
+			xx2 = x2 * x2;
+			yy2 = y2 * y2;
+			n2++;
+
+			y3 = 2 * x3 * y3 + ci;
+			x3 = xx3 - yy3 + c3;
+			xx3 = x3 * x3;
+			yy3 = y3 * y3;
+			n3++;
+
+			if (p0 >= 0)
+			{
+				boolean stopped = true;
+				if (xx0 + yy0 > EscapeTime.BAILOUT_SQUARED)
+					store(p0, true, n0, n0, EscapeTime.INTERIOR_NONE, x0, y0, xx0 + yy0);
+				else if (interiorChecks && Math.abs(x0 - sx0) < tolerance && Math.abs(y0 - sy0) < tolerance)
+					store(p0, false, maxIterations, n0, EscapeTime.INTERIOR_PERIODIC, x0, y0, xx0 + yy0);
+				else if (n0 >= maxIterations)
+					store(p0, false, maxIterations, maxIterations, EscapeTime.INTERIOR_NONE, x0, y0, xx0 + yy0);
+				else
+				{
+					stopped = false;
+					if (interiorChecks && ++steps0 == interval0)
+					{
+						sx0 = x0;
+						sy0 = y0;
+						steps0 = 0;
+						interval0 *= 2;
+					}
+				}
+
+				if (stopped)
+				{
+					if (next < count)
+					{
+						p0 = next;
+						c0 = cReal[next];
+						x0 = sx0 = c0;
+						y0 = sy0 = ci;
+						xx0 = c0 * c0;
+						yy0 = ciSquared;
+						n0 = 0;
+						steps0 = 0;
+						interval0 = 1;
+						next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+					}
+					else
+					{
+						p0 = -1;
+						running--;
+					}
+				}
+			}
+
+			if (p1 >= 0)
+			{
+				boolean stopped = true;
+				if (xx1 + yy1 > EscapeTime.BAILOUT_SQUARED)
+					store(p1, true, n1, n1, EscapeTime.INTERIOR_NONE, x1, y1, xx1 + yy1);
+				else if (interiorChecks && Math.abs(x1 - sx1) < tolerance && Math.abs(y1 - sy1) < tolerance)
+					store(p1, false, maxIterations, n1, EscapeTime.INTERIOR_PERIODIC, x1, y1, xx1 + yy1);
+				else if (n1 >= maxIterations)
+					store(p1, false, maxIterations, maxIterations, EscapeTime.INTERIOR_NONE, x1, y1, xx1 + yy1);
+				else
+				{
+					stopped = false;
+					if (interiorChecks && ++steps1 == interval1)
+					{
+						sx1 = x1;
+						sy1 = y1;
+						steps1 = 0;
+						interval1 *= 2;
+					}
+				}
+
+				if (stopped)
+				{
+					if (next < count)
+					{
+						p1 = next;
+						c1 = cReal[next];
+						x1 = sx1 = c1;
+						y1 = sy1 = ci;
+						xx1 = c1 * c1;
+						yy1 = ciSquared;
+						n1 = 0;
+						steps1 = 0;
+						interval1 = 1;
+						next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+					}
+					else
+					{
+						p1 = -1;
+						running--;
+					}
+				}
+			}
+
+			if (p2 >= 0)
+			{
+				boolean stopped = true;
+				if (xx2 + yy2 > EscapeTime.BAILOUT_SQUARED)
+					store(p2, true, n2, n2, EscapeTime.INTERIOR_NONE, x2, y2, xx2 + yy2);
+				else if (interiorChecks && Math.abs(x2 - sx2) < tolerance && Math.abs(y2 - sy2) < tolerance)
+					store(p2, false, maxIterations, n2, EscapeTime.INTERIOR_PERIODIC, x2, y2, xx2 + yy2);
+				else if (n2 >= maxIterations)
+					store(p2, false, maxIterations, maxIterations, EscapeTime.INTERIOR_NONE, x2, y2, xx2 + yy2);
+				else
+				{
+					stopped = false;
+					if (interiorChecks && ++steps2 == interval2)
+					{
+						sx2 = x2;
+						sy2 = y2;
+						steps2 = 0;
+						interval2 *= 2;
+					}
+				}
+
+				if (stopped)
+				{
+					if (next < count)
+					{
+						p2 = next;
+						c2 = cReal[next];
+						x2 = sx2 = c2;
+						y2 = sy2 = ci;
+						xx2 = c2 * c2;
+						yy2 = ciSquared;
+						n2 = 0;
+						steps2 = 0;
+						interval2 = 1;
+						next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+					}
+					else
+					{
+						p2 = -1;
+						running--;
+					}
+				}
+			}
+
+			if (p3 >= 0)
+			{
+				boolean stopped = true;
+				if (xx3 + yy3 > EscapeTime.BAILOUT_SQUARED)
+					store(p3, true, n3, n3, EscapeTime.INTERIOR_NONE, x3, y3, xx3 + yy3);
+				else if (interiorChecks && Math.abs(x3 - sx3) < tolerance && Math.abs(y3 - sy3) < tolerance)
+					store(p3, false, maxIterations, n3, EscapeTime.INTERIOR_PERIODIC, x3, y3, xx3 + yy3);
+				else if (n3 >= maxIterations)
+					store(p3, false, maxIterations, maxIterations, EscapeTime.INTERIOR_NONE, x3, y3, xx3 + yy3);
+				else
+				{
+					stopped = false;
+					if (interiorChecks && ++steps3 == interval3)
+					{
+						sx3 = x3;
+						sy3 = y3;
+						steps3 = 0;
+						interval3 *= 2;
+					}
+				}
+
+				if (stopped)
+				{
+					if (next < count)
+					{
+						p3 = next;
+						c3 = cReal[next];
+						x3 = sx3 = c3;
+						y3 = sy3 = ci;
+						xx3 = c3 * c3;
+						yy3 = ciSquared;
+						n3 = 0;
+						steps3 = 0;
+						interval3 = 1;
+						next = nextPoint(next + 1, count, maxIterations, interiorChecks, ci);
+					}
+					else
+					{
+						p3 = -1;
+						running--;
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Copies the result of one point of the last row into an {@link EscapeResult}, so it can be coloured and counted
+	 * the same way as a point from the scalar kernel
+	 *
+	 * @param index
+	 *            The position of the point in the row
+	 * @param result
+	 *            Receives the state of the point's orbit when iteration stopped
+	 */
+	public void getResult(int index, EscapeResult result)
+	{
+		result.set(escaped[index], iterations[index], iterationsRun[index], interiorCheck[index], zReal[index], zImaginary[index],
+				modulusSquared[index], 0);
+	}
+
+
+	/**
+	 * Stores the results of the points from index onwards which need no iterating, because they lie in the main
+	 * cardioid or period 2 bulb or the iteration limit is 0, and finds the next point a lane has to iterate
+	 *
+	 * @return <b>next</b> The index of the next point to iterate, or count if there are none left
+	 */
+	private int nextPoint(int index, int count, int maxIterations, boolean interiorChecks, double ci)
+	{
+		double ciSquared = ci * ci;
+
+		for (; index < count; index++)
+		{
+			double cr = cReal[index];
+			if (maxIterations <= 0)
+			{
+				store(index, false, maxIterations, maxIterations, EscapeTime.INTERIOR_NONE, cr, ci, cr * cr + ciSquared);
+				continue;
+			}
+			if (!interiorChecks)
+				return index;
+
+			double xShifted = cr - 0.25;
+			double q = xShifted * xShifted + ciSquared;
+			if (q * (q + xShifted) <= 0.25 * ciSquared)
+				store(index, false, maxIterations, 0, EscapeTime.INTERIOR_CARDIOID, cr, ci, cr * cr + ciSquared);
+			else if ((cr + 1) * (cr + 1) + ciSquared <= 0.0625)
+				store(index, false, maxIterations, 0, EscapeTime.INTERIOR_BULB, cr, ci, cr * cr + ciSquared);
+			else
+				return index;
+		}
+		return count;
+	}
+
+
+	private void store(int index, boolean pointEscaped, int pointIterations, int pointIterationsRun, int check, double pointReal,
+			double pointImaginary, double modulus)
+	{
+		escaped[index] = pointEscaped;
+		iterations[index] = pointIterations;
+		iterationsRun[index] = pointIterationsRun;
+		interiorCheck[index] = check;
+		zReal[index] = pointReal;
+		zImaginary[index] = pointImaginary;
+		modulusSquared[index] = modulus;
+	}
+
+
+	/**
+	 * Grows the row arrays so they can hold a row of the given length
+	 */
+	private void ensureCapacity(int count)
+	{
+		if (cReal.length >= count)
+			return;
+
+		cReal = new double[count];
+		escaped = new boolean[count];
+		iterations = new int[count];
+		iterationsRun = new int[count];
+		interiorCheck = new int[count];
+		zReal = new double[count];
+		zImaginary = new double[count];
+		modulusSquared = new double[count];
+	}
+
+}
@@ -1,12 +1,31 @@
 package mandelbrot.maths;
 
-import java.awt.Point;
-
-import mandelbrot.utilities.Pair;
-
 public final class Maths
 {
 
+	private static final double LOG_2 = Math.log(2);
+
+	private static final int EXP_TABLE_SIZE = 16384;
+	private static final double EXP_TABLE_RANGE = 16;
+	private static final double[] EXP_TABLE = new double[EXP_TABLE_SIZE + 1];
+
+	private static final int LOG_LOG_TABLE_SIZE = 16384;
+	private static final double LOG_LOG_TABLE_START = 4;
+	private static final double LOG_LOG_TABLE_RANGE = 60;
+	private static final double[] LOG_LOG_TABLE = new double[LOG_LOG_TABLE_SIZE + 1];
+
+	static
+	{
+		for (int i = 0; i <= EXP_TABLE_SIZE; i++)
+		{
+			EXP_TABLE[i] = Math.exp(-i * (EXP_TABLE_RANGE / EXP_TABLE_SIZE));
+		}
+		for (int i = 0; i <= LOG_LOG_TABLE_SIZE; i++)
+		{
+			LOG_LOG_TABLE[i] = Math.log(Math.log(LOG_LOG_TABLE_START + i * (LOG_LOG_TABLE_RANGE / LOG_LOG_TABLE_SIZE))) / LOG_2;
+		}
+	}
+
 	private Maths()
 	{
 		// TODO Auto-generated constructor stub
@@ -25,20 +44,43 @@ public final class Maths
 	}
 
 
-	public static Pair<Double, Double> calculateRealtoComplexRatio(int width, int height, Pair<Double, Double> xAxisComplex,
-			Pair<Double, Double> yAxisComplex)
+	/**
+	 * Approximates e^-x for x >= 0 from a table, falling back to {@link Math#exp(double)} past the end of the table,
+	 * where e^-x is too small to affect a sum anyway
+	 * 
+	 * @param x
+	 *            The non negative exponent
+	 * @return <b>value</b> e^-x
+	 */
+	public static double fastNegativeExp(double x)
 	{
-		double xRatio = (xAxisComplex.getRight() - xAxisComplex.getLeft()) / (width);
-		double yRatio = (yAxisComplex.getRight() - yAxisComplex.getLeft()) / (height);
-		return new Pair<Double, Double>(xRatio, yRatio);
+		double position = x * (EXP_TABLE_SIZE / EXP_TABLE_RANGE);
+		if (position >= EXP_TABLE_SIZE || position < 0)
+			return Math.exp(-x);
+
+		int index = (int) position;
+		double fraction = position - index;
+		return EXP_TABLE[index] + (EXP_TABLE[index + 1] - EXP_TABLE[index]) * fraction;
 	}
 
 
-	public static ComplexNumber convertCoordinateToComplexPlane(Point coordinate, Pair<Double, Double> conversionRatio, int width, int height, Pair<Double, Double> xAxisComplex, Pair<Double, Double> yAxisComplex)
+	/**
+	 * Approximates log2(ln(x)) from a table for the values of |z|^2 an escaping orbit usually ends on, which is the
+	 * fractional part of the smooth iteration count, falling back to the exact formula outside the table
+	 * 
+	 * @param x
+	 *            A value greater than 1
+	 * @return <b>value</b> log2(ln(x))
+	 */
+	public static double fastLog2Log(double x)
 	{
-		double x = coordinate.getX() * conversionRatio.getLeft() + xAxisComplex.getLeft();
-		double y = coordinate.getY() * conversionRatio.getRight() + yAxisComplex.getLeft();
-		return new ComplexNumber(x, y);
+		double position = (x - LOG_LOG_TABLE_START) * (LOG_LOG_TABLE_SIZE / LOG_LOG_TABLE_RANGE);
+		if (position >= LOG_LOG_TABLE_SIZE || position < 0)
+			return Math.log(Math.log(x)) / LOG_2;
+
+		int index = (int) position;
+		double fraction = position - index;
+		return LOG_LOG_TABLE[index] + (LOG_LOG_TABLE[index + 1] - LOG_LOG_TABLE[index]) * fraction;
 	}
 
 }
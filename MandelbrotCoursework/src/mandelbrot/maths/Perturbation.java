@@ -0,0 +1,140 @@
+package mandelbrot.maths;
+
+/**
+ * Escape time kernel for deep zooms, where neighbouring pixels are too close together to be told apart in double
+ * precision. Each pixel c = C + dc is iterated as the offset d_n = z_n - Z_n from a {@link ReferenceOrbit} Z_n, using
+ * d_(n+1) = 2 Z_n d_n + d_n^2 + dc. Both d_n and dc stay small enough for doubles to hold them exactly to the pixel,
+ * so a view 1e-100 wide costs about the same as a shallow one.
+ * <p>
+ * When the offset grows as large as the orbit itself, |z_n| < |d_n|, it has lost the precision it needs relative to
+ * the reference, which is what shows up as glitches. Such pixels are rebased: the iteration carries on with the
+ * reference restarted from Z_0 = 0 and d = z_n, which is exact, since z_n = Z_0 + z_n. The same happens when a pixel
+ * outlives a reference that escaped early
+ */
+public final class Perturbation
+{
+
+	private Perturbation()
+	{
+	}
+
+
+	/**
+	 * Iterates the pixel at reference point + dc, with the same iteration count and final z conventions as
+	 * {@link EscapeTime#mandelbrot(double, double, int, EscapeResult)}
+	 * 
+	 * @param orbit
+	 *            The reference orbit
+	 * @param dcReal
+	 *            The real part of the pixel's offset from the reference point
+	 * @param dcImaginary
+	 *            The imaginary part of the pixel's offset from the reference point
+	 * @param maxIterations
+	 *            The iteration limit, which must not be more than the orbit was calculated for
+	 * @param result
+	 *            Receives the state of the orbit when iteration stopped
+	 * @return <b>rebases</b> The number of times the pixel was rebased onto the start of the reference
+	 */
+	public static int mandelbrot(ReferenceOrbit orbit, double dcReal, double dcImaginary, int maxIterations, EscapeResult result)
+	{
+		// The pixel starts, like the reference, at z_0 = 0, so d_0 = 0 and z_1 = Z_1 + dc = c
+		return iterate(orbit, dcReal, dcImaginary, 0, 0, 0, maxIterations, result);
+	}
+
+
+	/**
+	 * Iterates the pixel at reference point + dc like {@link #mandelbrot(ReferenceOrbit, double, double, int, EscapeResult)},
+	 * but starts it from the iteration the series approximation skips to. A pixel which has already escaped by then,
+	 * which the series cannot tell, is iterated again from the start
+	 * 
+	 * @param orbit
+	 *            The reference orbit
+	 * @param series
+	 *            The series approximation built from the reference orbit for this view
+	 * @param dcReal
+	 *            The real part of the pixel's offset from the reference point
+	 * @param dcImaginary
+	 *            The imaginary part of the pixel's offset from the reference point
+	 * @param maxIterations
+	 *            The iteration limit, which must not be more than the orbit was calculated for
+	 * @param result
+	 *            Receives the state of the orbit when iteration stopped, with the skipped iterations left out of the
+	 *            iterations run
+	 * @return <b>rebases</b> The number of times the pixel was rebased onto the start of the reference
+	 */
+	public static int mandelbrot(ReferenceOrbit orbit, SeriesApproximation series, double dcReal, double dcImaginary, int maxIterations,
+			EscapeResult result)
+	{
+		int skipped = series.getSkippedIterations();
+		double dReal = series.offsetReal(dcReal, dcImaginary);
+		double dImaginary = series.offsetImaginary(dcReal, dcImaginary);
+		double zReal = orbit.getReal(skipped) + dReal;
+		double zImaginary = orbit.getImaginary(skipped) + dImaginary;
+
+		if (skipped <= 1 || zReal * zReal + zImaginary * zImaginary > EscapeTime.BAILOUT_SQUARED)
+			return mandelbrot(orbit, dcReal, dcImaginary, maxIterations, result);
+
+		return iterate(orbit, dcReal, dcImaginary, skipped, dReal, dImaginary, maxIterations, result);
+	}
+
+
+	/**
+	 * Carries on iterating a pixel from d_start
+	 */
+	private static int iterate(ReferenceOrbit orbit, double dcReal, double dcImaginary, int start, double dReal, double dImaginary,
+			int maxIterations, EscapeResult result)
+	{
+		int length = orbit.getLength();
+		int rebases = 0;
+
+		int n = start;
+		double zReal = orbit.getReal(n) + dReal;
+		double zImaginary = orbit.getImaginary(n) + dImaginary;
+		double modulus = zReal * zReal + zImaginary * zImaginary;
+
+		for (int i = start; i <= maxIterations; i++)
+		{
+			if (n == length)
+			{
+				// The reference has escaped, so carry on from the start of it
+				dReal = zReal;
+				dImaginary = zImaginary;
+				n = 0;
+				rebases++;
+			}
+
+			double referenceReal = orbit.getReal(n);
+			double referenceImaginary = orbit.getImaginary(n);
+
+			// d' = 2Zd + d^2 + dc = (2Z + d)d + dc
+			double sumReal = 2 * referenceReal + dReal;
+			double sumImaginary = 2 * referenceImaginary + dImaginary;
+			double newReal = sumReal * dReal - sumImaginary * dImaginary + dcReal;
+			dImaginary = sumReal * dImaginary + sumImaginary * dReal + dcImaginary;
+			dReal = newReal;
+			n++;
+
+			zReal = orbit.getReal(n) + dReal;
+			zImaginary = orbit.getImaginary(n) + dImaginary;
+			modulus = zReal * zReal + zImaginary * zImaginary;
+
+			// z_1 = c is never tested for escaping, to count iterations the same way as the other kernels
+			if (i > 0 && modulus > EscapeTime.BAILOUT_SQUARED)
+			{
+				result.set(true, i, i - start, EscapeTime.INTERIOR_NONE, zReal, zImaginary, modulus, 0);
+				return rebases;
+			}
+
+			if (modulus < dReal * dReal + dImaginary * dImaginary)
+			{
+				dReal = zReal;
+				dImaginary = zImaginary;
+				n = 0;
+				rebases++;
+			}
+		}
+		result.set(false, maxIterations, maxIterations - start, EscapeTime.INTERIOR_NONE, zReal, zImaginary, modulus, 0);
+		return rebases;
+	}
+
+}
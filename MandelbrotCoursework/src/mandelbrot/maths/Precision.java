@@ -0,0 +1,68 @@
+package mandelbrot.maths;
+
+/**
+ * The precision a Mandelbrot view is calculated in, chosen from its pixel spacing as the cheapest one which can still
+ * tell neighbouring pixels apart. Deeper than double precision, every pixel is iterated in doubles as an offset from
+ * a {@link ReferenceOrbit}, and only the reference orbit needs the extra precision, in double-double while its 106 bits
+ * are enough and in BigDecimal beyond that
+ */
+public enum Precision
+{
+	DOUBLE("Double"), DOUBLE_DOUBLE("Double-double"), ARBITRARY("Arbitrary");
+
+	/**
+	 * Pixel spacing, relative to the size of the coordinates, below which plain double precision can no longer be
+	 * trusted
+	 */
+	public static final double DOUBLE_LIMIT = 1e-12;
+
+	/**
+	 * Decimal digits of a double-double reference orbit kept beyond those needed to tell neighbouring pixels apart.
+	 * Rounding errors in the orbit grow with every iteration, so deep views need a margin, though fewer digits than
+	 * the {@link ReferenceOrbit#GUARD_DIGITS} of a BigDecimal orbit, since going to BigDecimal costs far more
+	 */
+	public static final int DOUBLE_DOUBLE_GUARD_DIGITS = 8;
+
+	/**
+	 * Pixel spacing, relative to the size of the coordinates, below which a double-double reference orbit can no
+	 * longer be trusted, leaving {@link #DOUBLE_DOUBLE_GUARD_DIGITS} of its digits spare
+	 */
+	public static final double DOUBLE_DOUBLE_LIMIT = Math.pow(10, DOUBLE_DOUBLE_GUARD_DIGITS - ReferenceOrbit.DOUBLE_DOUBLE_DIGITS);
+
+	private final String name;
+
+
+	private Precision(String name)
+	{
+		this.name = name;
+	}
+
+
+	/**
+	 * @param pixelSpacing
+	 *            The distance between neighbouring pixels
+	 * @param real
+	 *            The real part of the centre of the view
+	 * @param imaginary
+	 *            The imaginary part of the centre of the view
+	 * @return <b>precision</b> The cheapest precision the view can be calculated in
+	 */
+	public static Precision select(double pixelSpacing, double real, double imaginary)
+	{
+		double relativeSpacing = pixelSpacing / Math.max(1, Math.max(Math.abs(real), Math.abs(imaginary)));
+
+		if (relativeSpacing >= DOUBLE_LIMIT)
+			return DOUBLE;
+		if (relativeSpacing >= DOUBLE_DOUBLE_LIMIT)
+			return DOUBLE_DOUBLE;
+		return ARBITRARY;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+
+}
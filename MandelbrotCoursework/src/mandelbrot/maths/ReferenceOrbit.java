@@ -0,0 +1,184 @@
+package mandelbrot.maths;
+
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * The orbit of one reference point C, calculated in arbitrary precision so it is exact however deep the view, or in
+ * {@link DoubleDouble} precision when that is enough, and then stored as doubles. Every other pixel of a deep zoom is
+ * iterated by {@link Perturbation} as a small double precision offset from this orbit. The orbit is stored from Z_0 =
+ * 0, so Z_1 = C
+ */
+public class ReferenceOrbit
+{
+
+	/**
+	 * Decimal digits kept beyond those needed to tell neighbouring pixels apart
+	 */
+	public static final int GUARD_DIGITS = 20;
+
+	/**
+	 * The decimal digits a double-double holds
+	 */
+	public static final int DOUBLE_DOUBLE_DIGITS = 32;
+
+	private final double[] real;
+	private final double[] imaginary;
+	private final int length;
+	private final int precision;
+	private final long calculationTime;
+
+
+	/**
+	 * Iterates Z = Z^2 + C from Z_0 = 0 until |Z|^2 passes the bailout or maxIterations + 1 points have been stored
+	 * 
+	 * @param cReal
+	 *            The real part of the reference point
+	 * @param cImaginary
+	 *            The imaginary part of the reference point
+	 * @param maxIterations
+	 *            The iteration limit of the render
+	 * @param pixelSpacing
+	 *            The distance between neighbouring pixels, which decides how many digits the orbit is calculated with
+	 */
+	public ReferenceOrbit(BigDecimal cReal, BigDecimal cImaginary, int maxIterations, double pixelSpacing)
+	{
+		long startTime = System.nanoTime();
+
+		precision = precisionFor(pixelSpacing);
+		MathContext mathContext = new MathContext(precision, RoundingMode.HALF_EVEN);
+		BigDecimal two = BigDecimal.valueOf(2);
+
+		real = new double[maxIterations + 2];
+		imaginary = new double[maxIterations + 2];
+
+		BigDecimal x = BigDecimal.ZERO;
+		BigDecimal y = BigDecimal.ZERO;
+		int n = 0;
+
+		while (true)
+		{
+			double xDouble = x.doubleValue();
+			double yDouble = y.doubleValue();
+			real[n] = xDouble;
+			imaginary[n] = yDouble;
+
+			if (n > maxIterations || xDouble * xDouble + yDouble * yDouble > EscapeTime.BAILOUT_SQUARED)
+				break;
+
+			BigDecimal xSquared = x.multiply(x, mathContext);
+			BigDecimal ySquared = y.multiply(y, mathContext);
+			BigDecimal newY = two.multiply(x, mathContext).multiply(y, mathContext).add(cImaginary, mathContext);
+			x = xSquared.subtract(ySquared, mathContext).add(cReal, mathContext);
+			y = newY;
+			n++;
+		}
+
+		length = n;
+		calculationTime = System.nanoTime() - startTime;
+	}
+
+
+	/**
+	 * Iterates Z = Z^2 + C in double-double precision, which is much quicker than BigDecimal but only good for views
+	 * down to {@link Precision#DOUBLE_DOUBLE_LIMIT}
+	 * 
+	 * @param cReal
+	 *            The real part of the reference point
+	 * @param cImaginary
+	 *            The imaginary part of the reference point
+	 * @param maxIterations
+	 *            The iteration limit of the render
+	 */
+	public ReferenceOrbit(DoubleDouble cReal, DoubleDouble cImaginary, int maxIterations)
+	{
+		long startTime = System.nanoTime();
+
+		precision = DOUBLE_DOUBLE_DIGITS;
+		real = new double[maxIterations + 2];
+		imaginary = new double[maxIterations + 2];
+
+		DoubleDoubleComplex c = new DoubleDoubleComplex().set(cReal, cImaginary);
+		DoubleDoubleComplex z = new DoubleDoubleComplex();
+		int n = 0;
+
+		while (true)
+		{
+			double xDouble = z.getReal().doubleValue();
+			double yDouble = z.getImaginary().doubleValue();
+			real[n] = xDouble;
+			imaginary[n] = yDouble;
+
+			if (n > maxIterations || xDouble * xDouble + yDouble * yDouble > EscapeTime.BAILOUT_SQUARED)
+				break;
+
+			z.square().add(c);
+			n++;
+		}
+
+		length = n;
+		calculationTime = System.nanoTime() - startTime;
+	}
+
+
+	/**
+	 * @param pixelSpacing
+	 *            The distance between neighbouring pixels
+	 * @return <b>precision</b> The number of significant decimal digits needed to place points that far apart
+	 */
+	public static int precisionFor(double pixelSpacing)
+	{
+		int digits = (int) Math.ceil(-Math.log10(pixelSpacing));
+		return Math.max(digits, 0) + GUARD_DIGITS;
+	}
+
+
+	/**
+	 * @param n
+	 *            The iteration, from 0 to {@link #getLength()}
+	 * @return <b>real</b> The real part of Z_n
+	 */
+	public double getReal(int n)
+	{
+		return real[n];
+	}
+
+
+	/**
+	 * @param n
+	 *            The iteration, from 0 to {@link #getLength()}
+	 * @return <b>imaginary</b> The imaginary part of Z_n
+	 */
+	public double getImaginary(int n)
+	{
+		return imaginary[n];
+	}
+
+
+	/**
+	 * @return <b>length</b> The index of the last point stored, which is either the point the reference escaped on
+	 *         or the one after the iteration limit
+	 */
+	public int getLength()
+	{
+		return length;
+	}
+
+
+	public int getPrecision()
+	{
+		return precision;
+	}
+
+
+	/**
+	 * @return <b>calculationTime</b> How long the orbit took to calculate, in nanoseconds
+	 */
+	public long getCalculationTime()
+	{
+		return calculationTime;
+	}
+
+}
@@ -0,0 +1,132 @@
+package mandelbrot.maths;
+
+/**
+ * Lets every pixel of a deep zoom skip the early iterations it shares with the reference orbit. While the offset d_n of
+ * a pixel from the reference is small it is a polynomial in the pixel's offset dc, d_n = A_n dc + B_n dc^2 + C_n dc^3
+ * + ..., and the coefficients can be iterated once for the whole view:
+ * <p>
+ * A_(n+1) = 2 Z_n A_n + 1, B_(n+1) = 2 Z_n B_n + A_n^2, C_(n+1) = 2 Z_n C_n + 2 A_n B_n
+ * <p>
+ * The coefficients are iterated until the cubic term, at the largest offset in the view, is no longer negligible next
+ * to the linear one, and every pixel then starts from d_N evaluated with the truncated series instead of iterating from
+ * d_0
+ */
+public class SeriesApproximation
+{
+
+	/**
+	 * How large the last term of the series may grow, relative to the first, before it stops being trusted
+	 */
+	public static final double ERROR_TOLERANCE = 1e-12;
+
+	private final int skippedIterations;
+	private final double aReal;
+	private final double aImaginary;
+	private final double bReal;
+	private final double bImaginary;
+	private final double cReal;
+	private final double cImaginary;
+
+
+	/**
+	 * @param orbit
+	 *            The reference orbit the pixels are perturbed from
+	 * @param maxIterations
+	 *            The iteration limit of the render
+	 * @param maxOffset
+	 *            The largest |dc| of any pixel in the view, the distance from the reference to the furthest corner
+	 */
+	public SeriesApproximation(ReferenceOrbit orbit, int maxIterations, double maxOffset)
+	{
+		// A_1 = 1, B_1 = C_1 = 0, since d_1 = dc
+		double ar = 1, ai = 0;
+		double br = 0, bi = 0;
+		double cr = 0, ci = 0;
+		int n = 1;
+
+		double offsetSquared = maxOffset * maxOffset;
+		double offsetCubed = offsetSquared * maxOffset;
+
+		// The last reference point is never skipped to, so a pixel always has at least one iteration of its own left
+		int limit = Math.min(maxIterations, orbit.getLength() - 1);
+
+		while (n < limit)
+		{
+			double zr = 2 * orbit.getReal(n);
+			double zi = 2 * orbit.getImaginary(n);
+
+			double nextAr = zr * ar - zi * ai + 1;
+			double nextAi = zr * ai + zi * ar;
+			double nextBr = zr * br - zi * bi + (ar * ar - ai * ai);
+			double nextBi = zr * bi + zi * br + 2 * ar * ai;
+			double nextCr = zr * cr - zi * ci + 2 * (ar * br - ai * bi);
+			double nextCi = zr * ci + zi * cr + 2 * (ar * bi + ai * br);
+
+			double linear = Math.hypot(nextAr, nextAi) * maxOffset;
+			double cubic = Math.hypot(nextCr, nextCi) * offsetCubed;
+			if (!(cubic <= ERROR_TOLERANCE * linear))
+				break;
+
+			ar = nextAr;
+			ai = nextAi;
+			br = nextBr;
+			bi = nextBi;
+			cr = nextCr;
+			ci = nextCi;
+			n++;
+		}
+
+		skippedIterations = n;
+		aReal = ar;
+		aImaginary = ai;
+		bReal = br;
+		bImaginary = bi;
+		cReal = cr;
+		cImaginary = ci;
+	}
+
+
+	/**
+	 * @return <b>skippedIterations</b> The iteration N every pixel starts from, d_N being given by the series
+	 */
+	public int getSkippedIterations()
+	{
+		return skippedIterations;
+	}
+
+
+	/**
+	 * @param dcReal
+	 *            The real part of the pixel's offset from the reference point
+	 * @param dcImaginary
+	 *            The imaginary part of the pixel's offset from the reference point
+	 * @return <b>real</b> The real part of d_N for the pixel
+	 */
+	public double offsetReal(double dcReal, double dcImaginary)
+	{
+		// Horner's rule, ((C dc + B) dc + A) dc
+		double r = cReal * dcReal - cImaginary * dcImaginary + bReal;
+		double i = cReal * dcImaginary + cImaginary * dcReal + bImaginary;
+		double r2 = r * dcReal - i * dcImaginary + aReal;
+		double i2 = r * dcImaginary + i * dcReal + aImaginary;
+		return r2 * dcReal - i2 * dcImaginary;
+	}
+
+
+	/**
+	 * @param dcReal
+	 *            The real part of the pixel's offset from the reference point
+	 * @param dcImaginary
+	 *            The imaginary part of the pixel's offset from the reference point
+	 * @return <b>imaginary</b> The imaginary part of d_N for the pixel
+	 */
+	public double offsetImaginary(double dcReal, double dcImaginary)
+	{
+		double r = cReal * dcReal - cImaginary * dcImaginary + bReal;
+		double i = cReal * dcImaginary + cImaginary * dcReal + bImaginary;
+		double r2 = r * dcReal - i * dcImaginary + aReal;
+		double i2 = r * dcImaginary + i * dcReal + aImaginary;
+		return r2 * dcImaginary + i2 * dcReal;
+	}
+
+}
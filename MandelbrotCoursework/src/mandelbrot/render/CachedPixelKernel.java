@@ -0,0 +1,222 @@
+package mandelbrot.render;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.LaneEscapeTime;
+
+/**
+ * Wraps a kernel so the pixels of tiles already in a {@link TileCache} are read from the cache instead of being
+ * calculated. The tiles covering the view are looked up once when the kernel is created, so every renderer and render
+ * mode only calculates the tiles which were missing. Once the image is finished, {@link #storeTiles(Framebuffer)}
+ * adds the tiles it calculated to the cache
+ */
+public class CachedPixelKernel implements RowKernel
+{
+
+	private static final int TILE_SIZE = TileCache.TILE_SIZE;
+	private static final int TILE_PIXELS = TILE_SIZE * TILE_SIZE;
+
+	private final PixelKernel kernel;
+	private final TileCache cache;
+	private final Viewport viewport;
+	private final int iterations;
+	private final String formula;
+	private final long firstTileX;
+	private final long firstTileY;
+	private final int xOffset;
+	private final int yOffset;
+	private final int tilesAcross;
+	private final int tilesDown;
+	private final float[][] cachedTiles;
+	private int cachedTileCount;
+
+
+	/**
+	 * @param kernel
+	 *            Calculates the pixels which are not in the cache
+	 * @param cache
+	 *            The cache to read tiles from and add them to
+	 * @param viewport
+	 *            The view being rendered, which must lie on the global grid
+	 * @param iterations
+	 *            The iteration limit of the render
+	 * @param formula
+	 *            Names the fractal and any option which changes the values the kernel calculates
+	 */
+	public CachedPixelKernel(PixelKernel kernel, TileCache cache, Viewport viewport, int iterations, String formula)
+	{
+		if (!viewport.isAligned())
+			throw new IllegalArgumentException("Only views on the global grid can be cached");
+
+		this.kernel = kernel;
+		this.cache = cache;
+		this.viewport = viewport;
+		this.iterations = iterations;
+		this.formula = formula;
+
+		long realIndex = (long) viewport.getRealIndex();
+		long imaginaryIndex = (long) viewport.getImaginaryIndex();
+		this.firstTileX = Math.floorDiv(realIndex, TILE_SIZE);
+		this.firstTileY = Math.floorDiv(imaginaryIndex, TILE_SIZE);
+		this.xOffset = (int) Math.floorMod(realIndex, (long) TILE_SIZE);
+		this.yOffset = (int) Math.floorMod(imaginaryIndex, (long) TILE_SIZE);
+		this.tilesAcross = (xOffset + viewport.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+		this.tilesDown = (yOffset + viewport.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+
+		this.cachedTiles = new float[tilesAcross * tilesDown][];
+		for (int tileY = 0; tileY < tilesDown; tileY++)
+		{
+			for (int tileX = 0; tileX < tilesAcross; tileX++)
+			{
+				float[] values = cache.get(keyOf(tileX, tileY));
+				cachedTiles[tileY * tilesAcross + tileX] = values;
+				if (values != null)
+					cachedTileCount++;
+			}
+		}
+	}
+
+
+	@Override
+	public float valueAt(int x, int y, EscapeResult escapeResult)
+	{
+		float[] tile = tileAt(x, y);
+		if (tile == null)
+			return kernel.valueAt(x, y, escapeResult);
+
+		int index = indexInTile(x, y);
+		escapeResult.setCached(tile[index] != Palette.INTERIOR, tile[TILE_PIXELS + index]);
+		return tile[index];
+	}
+
+
+	/**
+	 * Hands each run of pixels outside the cached tiles to the wrapped kernel in one call. The runs are worked through
+	 * from the right, so each can be calculated at the start of the arrays and moved into place without overwriting
+	 * one already finished, and the cached pixels are filled in last
+	 */
+	@Override
+	public void valuesAt(int first, int stride, int y, int count, float[] values, float[] moduli, LaneEscapeTime lanes,
+			EscapeResult escapeResult)
+	{
+		if (!(kernel instanceof RowKernel))
+		{
+			for (int k = 0; k < count; k++)
+			{
+				values[k] = valueAt(first + k * stride, y, escapeResult);
+				moduli[k] = (float) escapeResult.getModulusSquared();
+			}
+			return;
+		}
+
+		RowKernel rowKernel = (RowKernel) kernel;
+		int end = count;
+		while (end > 0)
+		{
+			boolean cached = tileAt(first + (end - 1) * stride, y) != null;
+			int start = end - 1;
+			while (start > 0 && (tileAt(first + (start - 1) * stride, y) != null) == cached)
+				start--;
+
+			if (!cached)
+			{
+				rowKernel.valuesAt(first + start * stride, stride, y, end - start, values, moduli, lanes, escapeResult);
+				System.arraycopy(values, 0, values, start, end - start);
+				System.arraycopy(moduli, 0, moduli, start, end - start);
+			}
+			end = start;
+		}
+
+		for (int k = 0; k < count; k++)
+		{
+			int x = first + k * stride;
+			float[] tile = tileAt(x, y);
+			if (tile != null)
+			{
+				int index = indexInTile(x, y);
+				values[k] = tile[index];
+				moduli[k] = tile[TILE_PIXELS + index];
+			}
+		}
+	}
+
+
+	/**
+	 * Adds every tile which was calculated rather than read from the cache, and lies entirely inside the image, to the
+	 * cache. Tiles cut off by the edge of the image are left out, since only part of them was calculated
+	 * 
+	 * @param framebuffer
+	 *            The finished image, rendered with this kernel at full resolution
+	 */
+	public void storeTiles(Framebuffer framebuffer)
+	{
+		float[] image = framebuffer.getValues();
+		float[] imageModuli = framebuffer.getModuli();
+		int width = framebuffer.getWidth();
+		Map<TileKey, float[]> calculated = new HashMap<TileKey, float[]>();
+
+		for (int tileY = 0; tileY < tilesDown; tileY++)
+		{
+			int yStart = tileY * TILE_SIZE - yOffset;
+			if (yStart < 0 || yStart + TILE_SIZE > framebuffer.getHeight())
+				continue;
+
+			for (int tileX = 0; tileX < tilesAcross; tileX++)
+			{
+				int xStart = tileX * TILE_SIZE - xOffset;
+				if (xStart < 0 || xStart + TILE_SIZE > width || cachedTiles[tileY * tilesAcross + tileX] != null)
+					continue;
+
+				float[] values = new float[TileCache.TILE_VALUES];
+				for (int row = 0; row < TILE_SIZE; row++)
+				{
+					System.arraycopy(image, (yStart + row) * width + xStart, values, row * TILE_SIZE, TILE_SIZE);
+					System.arraycopy(imageModuli, (yStart + row) * width + xStart, values, TILE_PIXELS + row * TILE_SIZE, TILE_SIZE);
+				}
+				calculated.put(keyOf(tileX, tileY), values);
+			}
+		}
+		cache.putAll(calculated);
+	}
+
+
+	/**
+	 * @return <b>cachedTileCount</b> How many of the tiles covering the view were found in the cache
+	 */
+	public int getCachedTileCount()
+	{
+		return cachedTileCount;
+	}
+
+
+	/**
+	 * @return <b>tileCount</b> How many tiles of the grid the view covers
+	 */
+	public int getTileCount()
+	{
+		return tilesAcross * tilesDown;
+	}
+
+
+	private float[] tileAt(int x, int y)
+	{
+		return cachedTiles[((y + yOffset) / TILE_SIZE) * tilesAcross + (x + xOffset) / TILE_SIZE];
+	}
+
+
+	private int indexInTile(int x, int y)
+	{
+		return ((y + yOffset) % TILE_SIZE) * TILE_SIZE + (x + xOffset) % TILE_SIZE;
+	}
+
+
+	private TileKey keyOf(int tileX, int tileY)
+	{
+		return new TileKey(viewport.getRealLevel(), viewport.getImaginaryLevel(), firstTileX + tileX, firstTileY + tileY, iterations,
+				formula);
+	}
+
+}
@@ -0,0 +1,35 @@
+package mandelbrot.render;
+
+/**
+ * The ways the stored values of a framebuffer can be turned into colours, see
+ * {@link Framebuffer#colour(Palette, Colouring, TileRenderer)}
+ */
+public enum Colouring
+{
+	/**
+	 * The smooth value of each pixel is coloured by the palette as it is
+	 */
+	SMOOTH("Smooth"),
+
+	/**
+	 * The smooth values are spread out so each colour of the palette covers about as many pixels as any other, which
+	 * brings out detail when most of the image escapes at similar speeds
+	 */
+	HISTOGRAM("Equalised");
+
+	private final String displayName;
+
+
+	private Colouring(String displayName)
+	{
+		this.displayName = displayName;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return displayName;
+	}
+
+}
@@ -0,0 +1,552 @@
+package mandelbrot.render;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps tiles of the global grid on disk, so they outlive the program and are shared by every copy of it running on
+ * the machine. Each tile is a small binary file, written to a temporary file and renamed into place so a reader never
+ * sees half a tile, and read back through a memory mapping. An index file records the size and last use of every
+ * tile, and once the tiles take up more than the size budget the least recently used are deleted. Changes to the
+ * index are made while holding a lock on a lock file, so several processes can use the same directory at once. Reads
+ * are recorded in the index along with the next batch of writes, or on their own once enough of them are waiting or
+ * the cache is flushed, so tiles which are only ever read still count as used
+ * <p>
+ * Every file is written while holding the lock, so a temporary file found while holding it was left by a process which
+ * failed part way. The first time the index is changed, such files are deleted and tile files missing from the index
+ * are added to it, so space lost to a crash is still counted against the budget
+ * <p>
+ * A tile file is a header of the magic number, format version, tile size and the whole key, followed by the values
+ * of the tile as laid out in memory, see {@link TileCache#TILE_VALUES}. The header lets a file be checked against the
+ * key it is read for, and files from an older version of the format are treated as missing
+ */
+public class DiskTileCache
+{
+
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	private static final int TILE_MAGIC = 0x4D54494C;
+	private static final int INDEX_MAGIC = 0x4D54494E;
+	private static final short FORMAT_VERSION = 2;
+	private static final String INDEX_NAME = "index.bin";
+	private static final String LOCK_NAME = "cache.lock";
+	private static final String TILE_SUFFIX = ".tile";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	/**
+	 * Once this many reads are waiting to be recorded, the index is updated straight away rather than with the next
+	 * batch of writes
+	 */
+	private static final int MAX_PENDING_READS = 256;
+
+	private final File directory;
+	private final long maxBytes;
+
+	/**
+	 * Tiles read since the index was last written, with the time they were read, so their last use can be updated
+	 * the next time the index is changed
+	 */
+	private final Map<TileKey, Long> pendingReads = new HashMap<TileKey, Long>();
+
+	/**
+	 * Whether the directory has been checked for files missing from the index since the program started
+	 */
+	private boolean recovered;
+
+
+	/**
+	 * @param directory
+	 *            The directory to keep the tiles in, created if it does not exist
+	 * @param maxBytes
+	 *            The most space on disk the tiles may take up
+	 */
+	public DiskTileCache(File directory, long maxBytes)
+	{
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("The size budget cannot be negative, was " + maxBytes);
+
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+
+	/**
+	 * @param key
+	 *            The tile to read
+	 * @return <b>values</b> The values of the tile, or null if the tile is not on disk or its file cannot be read
+	 */
+	public float[] get(TileKey key)
+	{
+		Path path = fileOf(key).toPath();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (!readHeader(buffer, key))
+				return null;
+
+			float[] values = new float[TileCache.TILE_VALUES];
+			if (buffer.remaining() < values.length * 4)
+				return null;
+			buffer.asFloatBuffer().get(values);
+
+			boolean full;
+			synchronized (this)
+			{
+				pendingReads.put(key, System.currentTimeMillis());
+				full = pendingReads.size() >= MAX_PENDING_READS;
+			}
+			if (full)
+				flush();
+			return values;
+		}
+		catch (NoSuchFileException e)
+		{
+			// Never written, or deleted by another process since
+			return null;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+
+	/**
+	 * Writes a batch of tiles and adds them to the index, then deletes the least recently used tiles until the cache
+	 * is back within its budget
+	 * 
+	 * @param batch
+	 *            The tiles to write, and the values of their pixels
+	 */
+	public synchronized void putAll(Map<TileKey, float[]> batch)
+	{
+		if (batch.isEmpty())
+			return;
+
+		updateIndex(batch);
+	}
+
+
+	/**
+	 * Records the tiles read since the index was last changed, without waiting for a batch of writes
+	 */
+	public synchronized void flush()
+	{
+		if (pendingReads.isEmpty())
+			return;
+
+		updateIndex(Collections.<TileKey, float[]> emptyMap());
+	}
+
+
+	/**
+	 * Writes a batch of tiles, records the reads waiting to be recorded and evicts tiles over the budget, all while
+	 * holding the lock. Must be called holding this object's monitor
+	 */
+	private void updateIndex(Map<TileKey, float[]> batch)
+	{
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			System.err.println("Could not create the tile cache directory " + directory);
+			return;
+		}
+
+		try (FileChannel lockChannel = FileChannel.open(new File(directory, LOCK_NAME).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE))
+		{
+			FileLock lock = lockChannel.lock();
+			try
+			{
+				Map<TileKey, IndexEntry> index = readIndex();
+				if (!recovered)
+				{
+					recover(index);
+					recovered = true;
+				}
+				long now = System.currentTimeMillis();
+
+				for (Map.Entry<TileKey, float[]> tile : batch.entrySet())
+				{
+					long bytes = writeTile(tile.getKey(), tile.getValue());
+					index.put(tile.getKey(), new IndexEntry(tile.getKey(), bytes, now));
+				}
+
+				for (Map.Entry<TileKey, Long> read : pendingReads.entrySet())
+				{
+					IndexEntry entry = index.get(read.getKey());
+					if (entry != null && entry.lastUsed < read.getValue())
+						entry.lastUsed = read.getValue();
+				}
+				pendingReads.clear();
+
+				evict(index);
+				writeIndex(index);
+			}
+			finally
+			{
+				lock.release();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * Deletes temporary files left by a process which failed part way, and adds tile files which are missing from the
+	 * index, last used when they were written. Must be called holding the lock
+	 */
+	private void recover(Map<TileKey, IndexEntry> index)
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+
+		Set<File> indexed = new HashSet<File>();
+		for (TileKey key : index.keySet())
+		{
+			indexed.add(fileOf(key));
+		}
+
+		for (File file : files)
+		{
+			String name = file.getName();
+			if (name.endsWith(TEMPORARY_SUFFIX))
+			{
+				delete(file);
+			}
+			else if (name.endsWith(TILE_SUFFIX) && !indexed.contains(file))
+			{
+				// Files from an older version of the format are never read, so they are deleted rather than kept
+				TileKey key = readKey(file);
+				if (key != null && fileOf(key).equals(file))
+					index.put(key, new IndexEntry(key, file.length(), file.lastModified()));
+				else
+					delete(file);
+			}
+		}
+	}
+
+
+	/**
+	 * Deletes the least recently used tiles until the rest fit in the budget. Must be called holding the lock
+	 */
+	private void evict(Map<TileKey, IndexEntry> index)
+	{
+		long total = 0;
+		for (IndexEntry entry : index.values())
+		{
+			total += entry.bytes;
+		}
+		if (total <= maxBytes)
+			return;
+
+		List<IndexEntry> entries = new ArrayList<IndexEntry>(index.values());
+		Collections.sort(entries, new Comparator<IndexEntry>()
+		{
+			@Override
+			public int compare(IndexEntry a, IndexEntry b)
+			{
+				return Long.compare(a.lastUsed, b.lastUsed);
+			}
+		});
+
+		for (IndexEntry entry : entries)
+		{
+			if (total <= maxBytes)
+				break;
+
+			try
+			{
+				Files.deleteIfExists(fileOf(entry.key).toPath());
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				continue;
+			}
+			index.remove(entry.key);
+			total -= entry.bytes;
+		}
+	}
+
+
+	/**
+	 * @return <b>bytes</b> The size of the file written
+	 */
+	private long writeTile(TileKey key, float[] values) throws IOException
+	{
+		byte[] formula = key.getFormula().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(headerSize(formula.length) + values.length * 4);
+		buffer.putInt(TILE_MAGIC);
+		buffer.putShort(FORMAT_VERSION);
+		buffer.putShort((short) TileCache.TILE_SIZE);
+		buffer.putInt(key.getRealLevel());
+		buffer.putInt(key.getImaginaryLevel());
+		buffer.putLong(key.getTileX());
+		buffer.putLong(key.getTileY());
+		buffer.putInt(key.getIterations());
+		buffer.putShort((short) formula.length);
+		buffer.put(formula);
+		buffer.asFloatBuffer().put(values);
+		buffer.position(buffer.capacity());
+		buffer.flip();
+
+		File file = fileOf(key);
+		File temporary = File.createTempFile("tile", TEMPORARY_SUFFIX, directory);
+		boolean moved = false;
+		try
+		{
+			try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE))
+			{
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			move(temporary.toPath(), file.toPath());
+			moved = true;
+		}
+		finally
+		{
+			if (!moved)
+				delete(temporary);
+		}
+		return buffer.capacity();
+	}
+
+
+	/**
+	 * Checks the header of a tile file against the key it was read for, leaving the buffer at the first value
+	 */
+	private static boolean readHeader(ByteBuffer buffer, TileKey key)
+	{
+		return key.equals(readKey(buffer));
+	}
+
+
+	/**
+	 * Reads the key from the header of a tile file, leaving the buffer at the first value
+	 * 
+	 * @return <b>key</b> The key of the tile, or null if the header is damaged or from another version of the format
+	 */
+	private static TileKey readKey(ByteBuffer buffer)
+	{
+		if (buffer.remaining() < headerSize(0))
+			return null;
+
+		if (buffer.getInt() != TILE_MAGIC || buffer.getShort() != FORMAT_VERSION || buffer.getShort() != TileCache.TILE_SIZE)
+			return null;
+		int realLevel = buffer.getInt();
+		int imaginaryLevel = buffer.getInt();
+		long tileX = buffer.getLong();
+		long tileY = buffer.getLong();
+		int iterations = buffer.getInt();
+		int formulaLength = buffer.getShort();
+		if (formulaLength < 0 || buffer.remaining() < formulaLength)
+			return null;
+
+		byte[] formula = new byte[formulaLength];
+		buffer.get(formula);
+		return new TileKey(realLevel, imaginaryLevel, tileX, tileY, iterations, new String(formula, StandardCharsets.UTF_8));
+	}
+
+
+	/**
+	 * @return <b>key</b> The key in the header of a tile file, or null if it cannot be read
+	 */
+	private static TileKey readKey(File file)
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			return readKey(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+
+	private static int headerSize(int formulaLength)
+	{
+		return 4 + 2 + 2 + 4 + 4 + 8 + 8 + 4 + 2 + formulaLength;
+	}
+
+
+	/**
+	 * Reads the index, leaving out tiles whose files have gone. Must be called holding the lock
+	 */
+	private Map<TileKey, IndexEntry> readIndex() throws IOException
+	{
+		Map<TileKey, IndexEntry> index = new HashMap<TileKey, IndexEntry>();
+		File file = new File(directory, INDEX_NAME);
+		if (!file.exists())
+			return index;
+
+		try (InputStream in = Files.newInputStream(file.toPath());
+				DataInputStream data = new DataInputStream(new BufferedInputStream(in)))
+		{
+			if (data.readInt() != INDEX_MAGIC || data.readShort() != FORMAT_VERSION)
+				return index;
+
+			int count = data.readInt();
+			for (int i = 0; i < count; i++)
+			{
+				TileKey key = new TileKey(data.readInt(), data.readInt(), data.readLong(), data.readLong(), data.readInt(),
+						data.readUTF());
+				long bytes = data.readLong();
+				long lastUsed = data.readLong();
+				if (fileOf(key).exists())
+					index.put(key, new IndexEntry(key, bytes, lastUsed));
+			}
+		}
+		catch (IOException e)
+		{
+			// A damaged index only loses the order tiles were used in, the tiles themselves are still found by name
+			System.err.println("Tile cache index " + file + " could not be read, starting a new one: " + e);
+		}
+		return index;
+	}
+
+
+	/**
+	 * Replaces the index with a new one. Must be called holding the lock
+	 */
+	private void writeIndex(Map<TileKey, IndexEntry> index) throws IOException
+	{
+		File temporary = File.createTempFile("index", TEMPORARY_SUFFIX, directory);
+		boolean moved = false;
+		try
+		{
+			writeIndex(index, temporary);
+			move(temporary.toPath(), new File(directory, INDEX_NAME).toPath());
+			moved = true;
+		}
+		finally
+		{
+			if (!moved)
+				delete(temporary);
+		}
+	}
+
+
+	private static void writeIndex(Map<TileKey, IndexEntry> index, File file) throws IOException
+	{
+		try (OutputStream out = Files.newOutputStream(file.toPath());
+				DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out)))
+		{
+			data.writeInt(INDEX_MAGIC);
+			data.writeShort(FORMAT_VERSION);
+			data.writeInt(index.size());
+			for (IndexEntry entry : index.values())
+			{
+				data.writeInt(entry.key.getRealLevel());
+				data.writeInt(entry.key.getImaginaryLevel());
+				data.writeLong(entry.key.getTileX());
+				data.writeLong(entry.key.getTileY());
+				data.writeInt(entry.key.getIterations());
+				data.writeUTF(entry.key.getFormula());
+				data.writeLong(entry.bytes);
+				data.writeLong(entry.lastUsed);
+			}
+		}
+	}
+
+
+	private static void move(Path from, Path to) throws IOException
+	{
+		try
+		{
+			Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+
+	private static void delete(File file)
+	{
+		try
+		{
+			Files.deleteIfExists(file.toPath());
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * Tiles are found by name, so a tile written by another process can be read without waiting for the index
+	 */
+	private File fileOf(TileKey key)
+	{
+		return new File(directory, Integer.toHexString(key.getFormula().hashCode()) + "_" + key.getIterations() + "_"
+				+ key.getRealLevel() + "_" + key.getImaginaryLevel() + "_" + key.getTileX() + "_" + key.getTileY() + TILE_SUFFIX);
+	}
+
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+
+	/**
+	 * The size and last use of one tile in the index
+	 */
+	private static class IndexEntry
+	{
+
+		private final TileKey key;
+		private final long bytes;
+		private long lastUsed;
+
+
+		IndexEntry(TileKey key, long bytes, long lastUsed)
+		{
+			this.key = key;
+			this.bytes = bytes;
+			this.lastUsed = lastUsed;
+		}
+
+	}
+
+}
@@ -0,0 +1,345 @@
+package mandelbrot.render;
+
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An ARGB image whose pixels are written straight into the int array behind it, in row major order, rather than one
+ * at a time through {@link BufferedImage#setRGB(int, int, int)} and the colour model. Renders only store the raw
+ * result of each pixel, its smooth value and the final |z|^2 of its orbit, and the pixels are coloured from them in a
+ * separate parallel pass. The image can then be recoloured with another {@link Palette} or {@link Colouring} in a
+ * few milliseconds, without being calculated again
+ */
+public class Framebuffer
+{
+
+	/**
+	 * Colouring tasks with fewer rows than this are not split any further
+	 */
+	private static final int COLOURING_ROWS = 16;
+
+	private final BufferedImage image;
+	private final int[] pixels;
+	private final float[] values;
+	private final float[] moduli;
+	private final int width;
+	private final int height;
+	private volatile Palette palette = Palette.OCEAN;
+	private volatile Colouring colouring = Colouring.SMOOTH;
+	private volatile Histogram histogram;
+
+
+	/**
+	 * @param width
+	 *            The width of the image in pixels
+	 * @param height
+	 *            The height of the image in pixels
+	 */
+	public Framebuffer(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		this.image = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_ARGB);
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		this.values = new float[pixels.length];
+		this.moduli = new float[pixels.length];
+	}
+
+
+	/**
+	 * @return <b>pixels</b> The ARGB pixels of the image, where the pixel at (x, y) is at index y * width + x
+	 */
+	public int[] getPixels()
+	{
+		return pixels;
+	}
+
+
+	/**
+	 * @return <b>values</b> The smooth value of each pixel, in the same order as the pixels
+	 */
+	public float[] getValues()
+	{
+		return values;
+	}
+
+
+	/**
+	 * @return <b>moduli</b> The final |z|^2 of the orbit of each pixel, in the same order as the pixels
+	 */
+	public float[] getModuli()
+	{
+		return moduli;
+	}
+
+
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+
+	/**
+	 * @return <b>palette</b> The palette the image was last coloured with
+	 */
+	public Palette getPalette()
+	{
+		return palette;
+	}
+
+
+	/**
+	 * @return <b>colouring</b> The way the image was last coloured
+	 */
+	public Colouring getColouring()
+	{
+		return colouring;
+	}
+
+
+	/**
+	 * Stores the result of a pixel, which is not coloured until the next call to
+	 * {@link #colour(Palette, Colouring, TileRenderer)}
+	 * 
+	 * @param x
+	 *            The column of the pixel
+	 * @param y
+	 *            The row of the pixel
+	 * @param value
+	 *            The smooth value of the pixel, or {@link Palette#INTERIOR}
+	 * @param modulusSquared
+	 *            The final |z|^2 of the pixel's orbit
+	 */
+	public void setValue(int x, int y, float value, float modulusSquared)
+	{
+		int index = y * width + x;
+		values[index] = value;
+		moduli[index] = modulusSquared;
+	}
+
+
+	public float getValue(int x, int y)
+	{
+		return values[y * width + x];
+	}
+
+
+	public float getModulusSquared(int x, int y)
+	{
+		return moduli[y * width + x];
+	}
+
+
+	public int getPixel(int x, int y)
+	{
+		return pixels[y * width + x];
+	}
+
+
+	/**
+	 * Fills a rectangle of the image with one result, clipped to the edges of the image
+	 * 
+	 * @param xStart
+	 *            The first column, inclusive
+	 * @param yStart
+	 *            The first row, inclusive
+	 * @param xEnd
+	 *            The last column, exclusive
+	 * @param yEnd
+	 *            The last row, exclusive
+	 * @param value
+	 *            The smooth value to fill with
+	 * @param modulusSquared
+	 *            The final |z|^2 to fill with
+	 */
+	public void fill(int xStart, int yStart, int xEnd, int yEnd, float value, float modulusSquared)
+	{
+		xEnd = Math.min(xEnd, width);
+		yEnd = Math.min(yEnd, height);
+
+		for (int y = yStart; y < yEnd; y++)
+		{
+			Arrays.fill(values, y * width + xStart, y * width + xEnd, value);
+			Arrays.fill(moduli, y * width + xStart, y * width + xEnd, modulusSquared);
+		}
+	}
+
+
+	/**
+	 * Copies the results of another image of the same size moved by a whole number of pixels, so that pixel (x, y)
+	 * takes the result of pixel (x + dx, y + dy) of the source. Pixels with no counterpart in the source are left as
+	 * they were
+	 * 
+	 * @param source
+	 *            The image to copy from
+	 * @param dx
+	 *            The number of columns the view has moved right by
+	 * @param dy
+	 *            The number of rows the view has moved down by
+	 */
+	public void copyShifted(Framebuffer source, int dx, int dy)
+	{
+		int xStart = Math.max(0, -dx);
+		int xEnd = Math.min(width, width - dx);
+		int yStart = Math.max(0, -dy);
+		int yEnd = Math.min(height, height - dy);
+		if (xEnd <= xStart)
+			return;
+
+		for (int y = yStart; y < yEnd; y++)
+		{
+			int from = (y + dy) * width + xStart + dx;
+			int to = y * width + xStart;
+			System.arraycopy(source.values, from, values, to, xEnd - xStart);
+			System.arraycopy(source.moduli, from, moduli, to, xEnd - xStart);
+		}
+	}
+
+
+	/**
+	 * Fills the image with the nearest results of another image, scaled and moved, as a stand in for this image until
+	 * it has been calculated. Pixel (x, y) takes the result of source pixel (xOrigin + x * xScale, yOrigin + y *
+	 * yScale), rounded to the nearest pixel and clamped to the edges of the source
+	 * 
+	 * @param source
+	 *            The image to take results from
+	 * @param xOrigin
+	 *            The column of the source that column 0 of this image lies on
+	 * @param xScale
+	 *            The number of source columns per column of this image
+	 * @param yOrigin
+	 *            The row of the source that row 0 of this image lies on
+	 * @param yScale
+	 *            The number of source rows per row of this image
+	 */
+	public void resample(Framebuffer source, double xOrigin, double xScale, double yOrigin, double yScale)
+	{
+		int[] columns = new int[width];
+		for (int x = 0; x < width; x++)
+		{
+			columns[x] = (int) Math.max(0, Math.min(source.width - 1, Math.round(xOrigin + x * xScale)));
+		}
+
+		for (int y = 0; y < height; y++)
+		{
+			int sourceRow = (int) Math.max(0, Math.min(source.height - 1, Math.round(yOrigin + y * yScale))) * source.width;
+			int row = y * width;
+			for (int x = 0; x < width; x++)
+			{
+				values[row + x] = source.values[sourceRow + columns[x]];
+				moduli[row + x] = source.moduli[sourceRow + columns[x]];
+			}
+		}
+	}
+
+
+	/**
+	 * Colours every pixel from its stored result, split into bands of rows coloured in parallel
+	 * 
+	 * @param palette
+	 *            The palette to colour with
+	 * @param colouring
+	 *            How the stored values are mapped on to the palette
+	 * @param tileRenderer
+	 *            Supplies the fork/join pool the bands are coloured on
+	 */
+	public void colour(Palette palette, Colouring colouring, TileRenderer tileRenderer)
+	{
+		Histogram histogram = colouring == Colouring.HISTOGRAM ? new Histogram(values) : null;
+		this.palette = palette;
+		this.colouring = colouring;
+		this.histogram = histogram;
+		tileRenderer.getPool().invoke(new ColouringTask(palette, histogram, 0, height));
+	}
+
+
+	/**
+	 * Colours one rectangle of the image the same way as the last call to
+	 * {@link #colour(Palette, Colouring, TileRenderer)}, so part of an image can be shown while the rest is still being
+	 * calculated. The histogram is not recalculated, since most of the image is not there yet, so with
+	 * {@link Colouring#HISTOGRAM} the rectangle is equalised by the values the image had when it was last coloured in
+	 * full, which may be those of an earlier frame. The shades are only exact once the finished image is coloured in
+	 * full again
+	 * 
+	 * @param xStart
+	 *            The first column, inclusive
+	 * @param yStart
+	 *            The first row, inclusive
+	 * @param xEnd
+	 *            The last column, exclusive
+	 * @param yEnd
+	 *            The last row, exclusive
+	 */
+	public void colour(int xStart, int yStart, int xEnd, int yEnd)
+	{
+		Palette palette = this.palette;
+		Histogram histogram = this.histogram;
+		for (int y = yStart; y < yEnd; y++)
+		{
+			for (int i = y * width + xStart; i < y * width + xEnd; i++)
+			{
+				float value = histogram != null ? histogram.equalise(values[i]) : values[i];
+				pixels[i] = palette.colour(value);
+			}
+		}
+	}
+
+
+	/**
+	 * A band of rows which colours itself if it is small enough, otherwise splits in half
+	 */
+	private class ColouringTask extends RecursiveAction
+	{
+
+		private final Palette palette;
+		private final Histogram histogram;
+		private final int yStart, yEnd;
+
+		private static final long serialVersionUID = -2470139521684815047L;
+
+
+		ColouringTask(Palette palette, Histogram histogram, int yStart, int yEnd)
+		{
+			this.palette = palette;
+			this.histogram = histogram;
+			this.yStart = yStart;
+			this.yEnd = yEnd;
+		}
+
+
+		@Override
+		protected void compute()
+		{
+			if (yEnd - yStart > COLOURING_ROWS)
+			{
+				int split = (yStart + yEnd) >>> 1;
+				invokeAll(new ColouringTask(palette, histogram, yStart, split), new ColouringTask(palette, histogram, split, yEnd));
+				return;
+			}
+
+			int end = yEnd * width;
+			for (int i = yStart * width; i < end; i++)
+			{
+				float value = histogram != null ? histogram.equalise(values[i]) : values[i];
+				pixels[i] = palette.colour(value);
+			}
+		}
+
+	}
+
+}
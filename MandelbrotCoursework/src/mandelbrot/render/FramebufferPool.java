@@ -0,0 +1,115 @@
+package mandelbrot.render;
+
+
+import java.util.ArrayDeque;
+
+/**
+ * Recycles the framebuffers of a panel so a new image is not allocated for every frame. One buffer is on screen at a
+ * time. The buffer that was on screen before it is kept out of use until the next buffer is shown, since the event
+ * thread may still be painting from it, so with the default capacity one buffer is shown, one is retired and one is
+ * rendered into. Free buffers are handed out to renders in the order they were freed. The buffers are only replaced
+ * when the panel changes size
+ */
+public class FramebufferPool
+{
+
+	public static final int DEFAULT_CAPACITY = 3;
+
+	private final int capacity;
+	private final ArrayDeque<Framebuffer> free = new ArrayDeque<Framebuffer>();
+	private Framebuffer displayed;
+	private Framebuffer retired;
+	private int width;
+	private int height;
+
+
+	public FramebufferPool()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+
+	/**
+	 * @param capacity
+	 *            The number of buffers to keep, including the one on screen and the one retired from it
+	 */
+	public FramebufferPool(int capacity)
+	{
+		if (capacity < 3)
+			throw new IllegalArgumentException("A pool needs at least 3 buffers, was " + capacity);
+
+		this.capacity = capacity;
+	}
+
+
+	/**
+	 * Hands out a buffer of the given size which is neither on screen nor retired from it. If the size has changed since the last call, every
+	 * free buffer is thrown away first
+	 * 
+	 * @param width
+	 *            The width of the buffer
+	 * @param height
+	 *            The height of the buffer
+	 * @return <b>framebuffer</b> A buffer to render into, whose old contents are undefined
+	 */
+	public synchronized Framebuffer acquire(int width, int height)
+	{
+		if (width != this.width || height != this.height)
+		{
+			free.clear();
+			this.width = width;
+			this.height = height;
+		}
+
+		Framebuffer framebuffer = free.pollFirst();
+		return framebuffer != null ? framebuffer : new Framebuffer(width, height);
+	}
+
+
+	/**
+	 * Marks a buffer as the one on screen and retires the buffer that was on screen before it. The buffer retired by
+	 * the last call is freed
+	 * 
+	 * @param framebuffer
+	 *            The buffer now being shown
+	 */
+	public synchronized void publish(Framebuffer framebuffer)
+	{
+		if (framebuffer == displayed)
+			return;
+
+		Framebuffer previous = retired;
+		retired = displayed;
+		displayed = framebuffer;
+		if (previous != framebuffer)
+			recycle(previous);
+	}
+
+
+	/**
+	 * Returns a buffer which will not be shown, such as the buffer of a cancelled render. The buffer on screen and
+	 * the one retired from it are never freed this way
+	 * 
+	 * @param framebuffer
+	 *            The buffer that is no longer needed
+	 */
+	public synchronized void release(Framebuffer framebuffer)
+	{
+		if (framebuffer != displayed && framebuffer != retired)
+			recycle(framebuffer);
+	}
+
+
+	public synchronized Framebuffer getDisplayed()
+	{
+		return displayed;
+	}
+
+
+	private void recycle(Framebuffer framebuffer)
+	{
+		if (framebuffer != null && framebuffer.getWidth() == width && framebuffer.getHeight() == height && free.size() < capacity - 2)
+			free.addLast(framebuffer);
+	}
+
+}
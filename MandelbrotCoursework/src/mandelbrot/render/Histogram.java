@@ -0,0 +1,77 @@
+package mandelbrot.render;
+
+/**
+ * The cumulative distribution of the smooth values of an image, used to equalise them. The values are counted into
+ * evenly sized bins between the smallest and largest, and a value is mapped to the fraction of pixels below it,
+ * interpolated within its bin
+ */
+public class Histogram
+{
+
+	public static final int BINS = 4096;
+
+	private final float[] cumulative = new float[BINS + 1];
+	private float min = Float.POSITIVE_INFINITY;
+	private float max = Float.NEGATIVE_INFINITY;
+	private float scale;
+
+
+	/**
+	 * @param values
+	 *            The smooth values to count, pixels inside the set are left out
+	 */
+	public Histogram(float[] values)
+	{
+		for (float value : values)
+		{
+			if (value == Palette.INTERIOR || Float.isNaN(value))
+				continue;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		if (!(max > min))
+			return;
+
+		scale = BINS / (max - min);
+		int[] counts = new int[BINS];
+		long total = 0;
+		for (float value : values)
+		{
+			if (value == Palette.INTERIOR || Float.isNaN(value))
+				continue;
+			counts[Math.min((int) ((value - min) * scale), BINS - 1)]++;
+			total++;
+		}
+
+		long running = 0;
+		for (int i = 0; i < BINS; i++)
+		{
+			cumulative[i] = (float) ((double) running / total);
+			running += counts[i];
+		}
+		cumulative[BINS] = 1;
+	}
+
+
+	/**
+	 * @param value
+	 *            A smooth value
+	 * @return <b>equalised</b> The fraction of the counted values below it, from 0 to 1, or the value itself if it is
+	 *         inside the set or every counted value was the same
+	 */
+	public float equalise(float value)
+	{
+		if (value == Palette.INTERIOR || !(max > min))
+			return value;
+
+		float position = (value - min) * scale;
+		if (position <= 0)
+			return 0;
+		if (position >= BINS)
+			return 1;
+
+		int index = (int) position;
+		return cumulative[index] + (cumulative[index + 1] - cumulative[index]) * (position - index);
+	}
+
+}
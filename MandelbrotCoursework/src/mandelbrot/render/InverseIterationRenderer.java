@@ -0,0 +1,308 @@
+package mandelbrot.render;
+
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Draws the boundary of a Julia set with the modified inverse iteration method, rather than iterating every pixel
+ * forwards. Every point of a Julia set has two preimages under z -> z^2 + c, both also on the set, so walking the tree
+ * of preimages from a point on the set visits nothing but the set. The walk starts from the repelling fixed point and
+ * counts how many times it lands on each pixel, and a branch is dropped once its pixel has been hit enough times. The
+ * points are then spread over the thin parts of the boundary instead of piling up where the preimages are dense, and
+ * the interior of a connected set costs nothing at all
+ *
+ * The work is bounded by a budget of points per pixel. It is split between walkers on the pool of a
+ * {@link TileRenderer}, each of which starts from its own share of the preimages near the fixed point and counts into
+ * its own hit buffer, so they never contend. The buffers are added together once every walker has finished
+ */
+public class InverseIterationRenderer
+{
+
+	/**
+	 * The number of times a pixel is hit before the branches landing on it are dropped
+	 */
+	public static final int DEFAULT_HITS_PER_PIXEL = 4;
+
+	/**
+	 * The most points walked for each pixel of the image, across all the walkers
+	 */
+	public static final int DEFAULT_POINTS_PER_PIXEL = 6;
+
+	/**
+	 * A branch which leaves the image is followed for at most this many preimages before it is dropped, since its hits
+	 * cannot be counted to prune it
+	 */
+	private static final int MAX_OUTSIDE_STEPS = 8;
+
+	/**
+	 * Each walker starts from at least this many preimages of the fixed point, so the walkers cover the whole set even
+	 * when some branches die out early
+	 */
+	private static final int SEEDS_PER_WALKER = 4;
+
+	/**
+	 * The range of smooth values the hit counts are mapped on to, so the outline shades gently from sparse to dense
+	 */
+	private static final float VALUE_RANGE = 0.1f;
+
+	private final TileRenderer tileRenderer;
+	private final int hitsPerPixel;
+	private final int pointsPerPixel;
+
+
+	/**
+	 * @param tileRenderer
+	 *            Supplies the fork/join pool the walkers run on
+	 */
+	public InverseIterationRenderer(TileRenderer tileRenderer)
+	{
+		this(tileRenderer, DEFAULT_HITS_PER_PIXEL, DEFAULT_POINTS_PER_PIXEL);
+	}
+
+
+	/**
+	 * @param tileRenderer
+	 *            Supplies the fork/join pool the walkers run on
+	 * @param hitsPerPixel
+	 *            The number of times a pixel is hit before the branches landing on it are dropped
+	 * @param pointsPerPixel
+	 *            The most points walked for each pixel of the image
+	 */
+	public InverseIterationRenderer(TileRenderer tileRenderer, int hitsPerPixel, int pointsPerPixel)
+	{
+		if (hitsPerPixel < 1)
+			throw new IllegalArgumentException("Hits per pixel must be at least 1, was " + hitsPerPixel);
+		if (pointsPerPixel < 1)
+			throw new IllegalArgumentException("Points per pixel must be at least 1, was " + pointsPerPixel);
+
+		this.tileRenderer = tileRenderer;
+		this.hitsPerPixel = hitsPerPixel;
+		this.pointsPerPixel = pointsPerPixel;
+	}
+
+
+	/**
+	 * Draws the outline of a Julia set into a framebuffer. Pixels on the set get a smooth value which grows with the
+	 * number of times they were hit, and every other pixel is left as {@link Palette#INTERIOR}, so the outline is drawn
+	 * on the palette's inside colour
+	 *
+	 * @param framebuffer
+	 *            The image to render into, the same size as the view
+	 * @param state
+	 *            The view and Julia constant to draw, the iteration limit is not used
+	 * @param job
+	 *            The job the image is being rendered for, or null if it cannot be cancelled
+	 * @return <b>finished</b> True if the image was finished, false if the job was cancelled first
+	 */
+	public boolean render(Framebuffer framebuffer, ViewState state, RenderJob<?> job)
+	{
+		int pixels = state.getWidth() * state.getHeight();
+		int walkers = tileRenderer.getParallelism();
+		double cReal = state.getJuliaReal();
+		double cImaginary = state.getJuliaImaginary();
+
+		// The fixed points of z^2 + c add up to 1, so the larger of them has |z| >= 1/2 and |2z| >= 1, which makes it
+		// repelling, or on the boundary when the two are equal
+		double[] root = squareRoot(0.25 - cReal, -cImaginary);
+		double[] seedReal = { 0.5 + root[0] };
+		double[] seedImaginary = { root[1] };
+		while (seedReal.length < walkers * SEEDS_PER_WALKER)
+		{
+			double[] nextReal = new double[seedReal.length * 2];
+			double[] nextImaginary = new double[seedImaginary.length * 2];
+			for (int i = 0; i < seedReal.length; i++)
+			{
+				double[] preimage = squareRoot(seedReal[i] - cReal, seedImaginary[i] - cImaginary);
+				nextReal[2 * i] = preimage[0];
+				nextImaginary[2 * i] = preimage[1];
+				nextReal[2 * i + 1] = -preimage[0];
+				nextImaginary[2 * i + 1] = -preimage[1];
+			}
+			seedReal = nextReal;
+			seedImaginary = nextImaginary;
+		}
+
+		final Walker[] tasks = new Walker[walkers];
+		long budget = (long) pixels * pointsPerPixel / walkers;
+		for (int i = 0; i < walkers; i++)
+		{
+			tasks[i] = new Walker(state, seedReal, seedImaginary, i, walkers, hitsPerPixel, budget, job);
+		}
+		tileRenderer.getPool().invoke(new RecursiveTask<Boolean>()
+		{
+			private static final long serialVersionUID = 6529147130812259710L;
+
+
+			@Override
+			protected Boolean compute()
+			{
+				invokeAll(tasks);
+				return Boolean.TRUE;
+			}
+		});
+
+		// Adds every walker's hits into the first walker's buffer
+		int[] hits = tasks[0].getRawResult();
+		for (int i = 1; i < walkers; i++)
+		{
+			int[] walkerHits = tasks[i].getRawResult();
+			if (hits == null || walkerHits == null)
+				return false;
+			for (int p = 0; p < pixels; p++)
+			{
+				hits[p] += walkerHits[p];
+			}
+		}
+		if (hits == null)
+			return false;
+
+		float[] values = framebuffer.getValues();
+		for (int p = 0; p < pixels; p++)
+		{
+			values[p] = hits[p] == 0 ? Palette.INTERIOR : VALUE_RANGE * Math.min(1.0f, hits[p] / (float) hitsPerPixel);
+		}
+		Arrays.fill(framebuffer.getModuli(), 0, pixels, 0.0f);
+		if (job != null)
+			job.addPixelsRendered(pixels);
+		return true;
+	}
+
+
+	/**
+	 * @return <b>root</b> The square root of real + imaginary i with a non-negative real part, as {real, imaginary}
+	 */
+	private static double[] squareRoot(double real, double imaginary)
+	{
+		double modulus = Math.hypot(real, imaginary);
+		double rootReal = Math.sqrt(Math.max(0, (modulus + real) / 2));
+		double rootImaginary = Math.sqrt(Math.max(0, (modulus - real) / 2));
+		return new double[] { rootReal, imaginary < 0 ? -rootImaginary : rootImaginary };
+	}
+
+
+	public int getHitsPerPixel()
+	{
+		return hitsPerPixel;
+	}
+
+
+	public int getPointsPerPixel()
+	{
+		return pointsPerPixel;
+	}
+
+
+	/**
+	 * Walks the preimages of its share of the seeds depth first, counting hits into its own buffer, until every
+	 * branch has been dropped or its share of the budget has been used up
+	 */
+	private static class Walker extends RecursiveTask<int[]>
+	{
+
+		private final ViewState state;
+		private final double[] seedReal, seedImaginary;
+		private final int first, stride;
+		private final int hitsPerPixel;
+		private final long budget;
+		private final RenderJob<?> job;
+
+		private static final long serialVersionUID = -3380385574471126921L;
+
+
+		Walker(ViewState state, double[] seedReal, double[] seedImaginary, int first, int stride, int hitsPerPixel, long budget,
+				RenderJob<?> job)
+		{
+			this.state = state;
+			this.seedReal = seedReal;
+			this.seedImaginary = seedImaginary;
+			this.first = first;
+			this.stride = stride;
+			this.hitsPerPixel = hitsPerPixel;
+			this.budget = budget;
+			this.job = job;
+		}
+
+
+		/**
+		 * @return <b>hits</b> The number of times each pixel was hit, row by row, or null if the job was cancelled
+		 */
+		@Override
+		protected int[] compute()
+		{
+			Viewport viewport = state.getViewport();
+			int width = state.getWidth();
+			int height = state.getHeight();
+			double cReal = state.getJuliaReal();
+			double cImaginary = state.getJuliaImaginary();
+			double realOrigin = viewport.realAt(0);
+			double imaginaryOrigin = viewport.imaginaryAt(0);
+			double realSpacing = viewport.realAt(1) - realOrigin;
+			double imaginarySpacing = viewport.imaginaryAt(1) - imaginaryOrigin;
+			int[] hits = new int[width * height];
+
+			double[] stackReal = new double[1024];
+			double[] stackImaginary = new double[1024];
+			int[] stackOutside = new int[1024];
+			int size = 0;
+			for (int i = first; i < seedReal.length; i += stride)
+			{
+				stackReal[size] = seedReal[i];
+				stackImaginary[size] = seedImaginary[i];
+				stackOutside[size] = 0;
+				size++;
+			}
+
+			for (long points = 1; size > 0 && points <= budget; points++)
+			{
+				// Gives up on the image as soon as the cursor has moved somewhere else
+				if ((points & 0xfff) == 0 && job != null && job.isCancelled())
+					return null;
+
+				size--;
+				double zReal = stackReal[size];
+				double zImaginary = stackImaginary[size];
+				int outside = stackOutside[size];
+
+				long x = Math.round((zReal - realOrigin) / realSpacing);
+				long y = Math.round((zImaginary - imaginaryOrigin) / imaginarySpacing);
+				if (x >= 0 && y >= 0 && x < width && y < height)
+				{
+					int index = (int) y * width + (int) x;
+					if (hits[index] >= hitsPerPixel)
+						continue;
+					hits[index]++;
+					outside = 0;
+				}
+				else if (++outside > MAX_OUTSIDE_STEPS)
+					continue;
+
+				if (size + 2 > stackReal.length)
+				{
+					stackReal = Arrays.copyOf(stackReal, stackReal.length * 2);
+					stackImaginary = Arrays.copyOf(stackImaginary, stackImaginary.length * 2);
+					stackOutside = Arrays.copyOf(stackOutside, stackOutside.length * 2);
+				}
+
+				// The square root of z - c, inline since it runs for every point, and its negative
+				double wReal = zReal - cReal;
+				double wImaginary = zImaginary - cImaginary;
+				double modulus = Math.hypot(wReal, wImaginary);
+				double rootReal = Math.sqrt(Math.max(0, (modulus + wReal) / 2));
+				double rootImaginary = Math.sqrt(Math.max(0, (modulus - wReal) / 2));
+				if (wImaginary < 0)
+					rootImaginary = -rootImaginary;
+				stackReal[size] = rootReal;
+				stackImaginary[size] = rootImaginary;
+				stackOutside[size] = outside;
+				stackReal[size + 1] = -rootReal;
+				stackImaginary[size + 1] = -rootImaginary;
+				stackOutside[size + 1] = outside;
+				size += 2;
+			}
+			return hits;
+		}
+
+	}
+
+}
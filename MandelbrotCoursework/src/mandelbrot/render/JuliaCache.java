@@ -0,0 +1,198 @@
+package mandelbrot.render;
+
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the results of recently rendered Julia sets in memory, keyed by the {@link ViewState} they were rendered for.
+ * The Julia constant always comes from a pixel of the Mandelbrot panel, so it is already quantised to that panel's
+ * pixel grid, and moving the cursor back over a pixel finds exactly the same key. Once the results take up more than
+ * the memory budget, the ones used least recently are thrown away first. Results can be added speculatively before
+ * they are asked for, and the cache counts how many of those were used
+ */
+public class JuliaCache
+{
+
+	public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+	private final long maxBytes;
+	private final LinkedHashMap<ViewState, float[]> results = new LinkedHashMap<ViewState, float[]>(16, 0.75f, true);
+	private final Set<ViewState> unusedPrefetches = new HashSet<ViewState>();
+	private long bytes;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder prefetches = new LongAdder();
+	private final LongAdder prefetchHits = new LongAdder();
+
+
+	public JuliaCache()
+	{
+		this(DEFAULT_MAX_BYTES);
+	}
+
+
+	/**
+	 * @param maxBytes
+	 *            The most memory the results may take up, a budget smaller than one result keeps nothing
+	 */
+	public JuliaCache(long maxBytes)
+	{
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("The memory budget cannot be negative, was " + maxBytes);
+
+		this.maxBytes = maxBytes;
+	}
+
+
+	/**
+	 * @param state
+	 *            The Julia set to look up
+	 * @return <b>values</b> The smooth value of every pixel row by row, followed by the final |z|^2 of every pixel in
+	 *         the same order, which must not be changed, or null if the set is not in the cache
+	 */
+	public synchronized float[] get(ViewState state)
+	{
+		float[] values = results.get(state);
+		if (values == null)
+		{
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		if (unusedPrefetches.remove(state))
+			prefetchHits.increment();
+		return values;
+	}
+
+
+	/**
+	 * @param state
+	 *            The Julia set to look for
+	 * @return <b>cached</b> True if the set is in the cache, without counting as a use of it
+	 */
+	public synchronized boolean contains(ViewState state)
+	{
+		return results.containsKey(state);
+	}
+
+
+	/**
+	 * Adds the result of a Julia set, throwing away the least recently used results if the budget has been used up
+	 *
+	 * @param state
+	 *            The Julia set that was rendered
+	 * @param values
+	 *            The smooth values followed by the final |z|^2 of its pixels, which the cache keeps rather than copying
+	 * @param prefetched
+	 *            Whether the set was rendered before anyone asked for it
+	 */
+	public synchronized void put(ViewState state, float[] values, boolean prefetched)
+	{
+		if (values.length != 2 * state.getWidth() * state.getHeight())
+			throw new IllegalArgumentException("A " + state.getWidth() + "x" + state.getHeight() + " Julia set has "
+					+ 2 * state.getWidth() * state.getHeight() + " values, was given " + values.length);
+
+		float[] previous = results.put(state, values);
+		if (previous != null)
+			bytes -= previous.length * 4L;
+		bytes += values.length * 4L;
+
+		if (prefetched)
+		{
+			prefetches.increment();
+			unusedPrefetches.add(state);
+		}
+
+		Iterator<Map.Entry<ViewState, float[]>> eldest = results.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext())
+		{
+			Map.Entry<ViewState, float[]> entry = eldest.next();
+			bytes -= entry.getValue().length * 4L;
+			unusedPrefetches.remove(entry.getKey());
+			eldest.remove();
+			evictions.increment();
+		}
+	}
+
+
+	public synchronized void clear()
+	{
+		results.clear();
+		unusedPrefetches.clear();
+		bytes = 0;
+	}
+
+
+	public synchronized int size()
+	{
+		return results.size();
+	}
+
+
+	/**
+	 * @return <b>bytes</b> The memory taken up by the results in the cache
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+
+	/**
+	 * @return <b>prefetches</b> How many sets were added before they were asked for
+	 */
+	public long getPrefetches()
+	{
+		return prefetches.sum();
+	}
+
+
+	/**
+	 * @return <b>prefetchHits</b> How many of the sets added before they were asked for were later asked for
+	 */
+	public long getPrefetchHits()
+	{
+		return prefetchHits.sum();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return "Julia cache: " + size() + " sets, " + getBytes() / 1024 + " of " + maxBytes / 1024 + " KB, " + getHits() + " hits, "
+				+ getMisses() + " misses, " + getEvictions() + " evictions, " + getPrefetchHits() + " of " + getPrefetches()
+				+ " prefetches used";
+	}
+
+}
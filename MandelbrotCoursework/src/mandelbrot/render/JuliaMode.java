@@ -0,0 +1,39 @@
+package mandelbrot.render;
+
+/**
+ * The ways the Julia panel can be rendered
+ */
+public enum JuliaMode
+{
+	/**
+	 * Every pixel is iterated forwards until it escapes or reaches the iteration limit
+	 */
+	ESCAPE_TIME("Escape time"),
+
+	/**
+	 * The outline is drawn by inverse iteration straight away, and stays on screen while every pixel is iterated
+	 * forwards
+	 */
+	OUTLINE_PREVIEW("Outline preview"),
+
+	/**
+	 * Only the outline is drawn, by inverse iteration
+	 */
+	INVERSE_ITERATION("Inverse iteration");
+
+	private final String displayName;
+
+
+	private JuliaMode(String displayName)
+	{
+		this.displayName = displayName;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return displayName;
+	}
+
+}
@@ -0,0 +1,276 @@
+package mandelbrot.render;
+
+
+import java.util.concurrent.RecursiveAction;
+
+import mandelbrot.maths.EscapeResult;
+
+/**
+ * Renders an image with the Mariani-Silver algorithm. The border of a rectangle is calculated first, and if every
+ * pixel on it is inside the set the whole rectangle is filled as inside, otherwise it is cut into four by a cross
+ * through its middle, the cross is calculated, and each quarter is handled the same way. Large areas of the inside of
+ * the set then cost only their outline. Quarters are forked onto the pool of a {@link TileRenderer}, so the recursion
+ * runs in parallel
+ * 
+ * Only the inside is ever filled. Smooth colouring means a border of any other single value still has a gradient
+ * inside it, so filling it would not match a full render. A filament of the outside can still be thinner than a pixel
+ * and cross the border between two samples, so the ring just inside the border has to be inside the set as well before
+ * a rectangle is filled. That makes a wrong fill very unlikely but not impossible, so the result is an approximation of
+ * a full render rather than a copy of it, which is why it is not the default {@link RenderMode}
+ */
+public class MarianiSilverRenderer
+{
+
+	/**
+	 * Rectangles with an inside narrower or shorter than this are calculated pixel by pixel rather than split again
+	 */
+	public static final int DEFAULT_MINIMUM_SIZE = 6;
+
+	/**
+	 * Rectangles with fewer pixels than this are recursed into on the current thread instead of being forked
+	 */
+	private static final int FORK_THRESHOLD = 64 * 64;
+
+	private final TileRenderer tileRenderer;
+	private final int minimumSize;
+
+
+	/**
+	 * @param tileRenderer
+	 *            Supplies the fork/join pool the rectangles are rendered on
+	 */
+	public MarianiSilverRenderer(TileRenderer tileRenderer)
+	{
+		this(tileRenderer, DEFAULT_MINIMUM_SIZE);
+	}
+
+
+	/**
+	 * @param tileRenderer
+	 *            Supplies the fork/join pool the rectangles are rendered on
+	 * @param minimumSize
+	 *            The size of inside below which a rectangle is no longer split
+	 */
+	public MarianiSilverRenderer(TileRenderer tileRenderer, int minimumSize)
+	{
+		if (minimumSize < 1)
+			throw new IllegalArgumentException("Minimum size must be at least 1, was " + minimumSize);
+
+		this.tileRenderer = tileRenderer;
+		this.minimumSize = minimumSize;
+	}
+
+
+	/**
+	 * Fills a framebuffer by subdividing from the outline of the whole image
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param kernel
+	 *            Calculates the value of each pixel
+	 * @param job
+	 *            The job the image is being rendered for
+	 * @return <b>finished</b> True if the image was finished, false if the job was cancelled first
+	 */
+	public boolean render(Framebuffer framebuffer, PixelKernel kernel, RenderJob<?> job)
+	{
+		return render(framebuffer, kernel, job, 0, 0, framebuffer.getWidth(), framebuffer.getHeight());
+	}
+
+
+	/**
+	 * Fills one rectangle of a framebuffer by subdividing from its outline, leaving the rest of the image as it was
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param kernel
+	 *            Calculates the value of each pixel
+	 * @param job
+	 *            The job the image is being rendered for
+	 * @param xStart
+	 *            The first column, inclusive
+	 * @param yStart
+	 *            The first row, inclusive
+	 * @param xEnd
+	 *            The last column, exclusive
+	 * @param yEnd
+	 *            The last row, exclusive
+	 * @return <b>finished</b> True if the rectangle was finished, false if the job was cancelled first
+	 */
+	public boolean render(Framebuffer framebuffer, PixelKernel kernel, RenderJob<?> job, int xStart, int yStart, int xEnd, int yEnd)
+	{
+		int width = xEnd - xStart;
+		int height = yEnd - yStart;
+
+		if (width > 0 && height > 0)
+		{
+			EscapeResult escapeResult = new EscapeResult();
+			calculateRow(framebuffer, kernel, escapeResult, yStart, xStart, xEnd - 1);
+			calculateRow(framebuffer, kernel, escapeResult, yEnd - 1, xStart, xEnd - 1);
+			calculateColumn(framebuffer, kernel, escapeResult, xStart, yStart + 1, yEnd - 2);
+			calculateColumn(framebuffer, kernel, escapeResult, xEnd - 1, yStart + 1, yEnd - 2);
+			job.addPixelsRendered(width <= 2 || height <= 2 ? (long) width * height : 2L * width + 2L * height - 4);
+
+			tileRenderer.getPool().invoke(new RectangleTask(framebuffer, kernel, job, xStart, yStart, xEnd - 1, yEnd - 1));
+		}
+
+		return !job.isCancelled();
+	}
+
+
+	public int getMinimumSize()
+	{
+		return minimumSize;
+	}
+
+
+	private static void calculateRow(Framebuffer framebuffer, PixelKernel kernel, EscapeResult escapeResult, int y, int xFirst, int xLast)
+	{
+		for (int x = xFirst; x <= xLast; x++)
+		{
+			float value = kernel.valueAt(x, y, escapeResult);
+			framebuffer.setValue(x, y, value, (float) escapeResult.getModulusSquared());
+		}
+	}
+
+
+	private static void calculateColumn(Framebuffer framebuffer, PixelKernel kernel, EscapeResult escapeResult, int x, int yFirst, int yLast)
+	{
+		for (int y = yFirst; y <= yLast; y++)
+		{
+			float value = kernel.valueAt(x, y, escapeResult);
+			framebuffer.setValue(x, y, value, (float) escapeResult.getModulusSquared());
+		}
+	}
+
+
+	/**
+	 * A rectangle, given by inclusive corners, whose border has already been calculated
+	 */
+	private class RectangleTask extends RecursiveAction
+	{
+
+		private final Framebuffer framebuffer;
+		private final PixelKernel kernel;
+		private final RenderJob<?> job;
+		private final int xFirst, yFirst, xLast, yLast;
+
+		private static final long serialVersionUID = -2296170474370437513L;
+
+
+		RectangleTask(Framebuffer framebuffer, PixelKernel kernel, RenderJob<?> job, int xFirst, int yFirst, int xLast, int yLast)
+		{
+			this.framebuffer = framebuffer;
+			this.kernel = kernel;
+			this.job = job;
+			this.xFirst = xFirst;
+			this.yFirst = yFirst;
+			this.xLast = xLast;
+			this.yLast = yLast;
+		}
+
+
+		@Override
+		protected void compute()
+		{
+			if (job.isCancelled())
+				return;
+
+			int insideWidth = xLast - xFirst - 1;
+			int insideHeight = yLast - yFirst - 1;
+			if (insideWidth <= 0 || insideHeight <= 0)
+				return;
+
+			EscapeResult escapeResult = new EscapeResult();
+
+			if (insideWidth >= 3 && insideHeight >= 3 && isBorderInterior())
+			{
+				// The ring is the border of the rectangle inside it, so if it is not all inside the set that rectangle is
+				// split from there, and none of it is calculated twice
+				RectangleTask inside = new RectangleTask(framebuffer, kernel, job, xFirst + 1, yFirst + 1, xLast - 1, yLast - 1);
+				calculateRing(escapeResult);
+				if (inside.isBorderInterior())
+				{
+					// The final |z|^2 of filled pixels is never calculated, so it is left at 0
+					framebuffer.fill(xFirst + 2, yFirst + 2, xLast - 1, yLast - 1, Palette.INTERIOR, 0);
+				}
+				else
+				{
+					inside.compute();
+				}
+				return;
+			}
+
+			if (insideWidth < minimumSize || insideHeight < minimumSize)
+			{
+				for (int y = yFirst + 1; y < yLast; y++)
+				{
+					calculateRow(framebuffer, kernel, escapeResult, y, xFirst + 1, xLast - 1);
+				}
+				job.addPixelsRendered((long) insideWidth * insideHeight);
+				return;
+			}
+
+			// Calculates a cross through the middle, which becomes the shared border of the four quarters
+			int xMiddle = (xFirst + xLast) / 2;
+			int yMiddle = (yFirst + yLast) / 2;
+			calculateRow(framebuffer, kernel, escapeResult, yMiddle, xFirst + 1, xLast - 1);
+			calculateColumn(framebuffer, kernel, escapeResult, xMiddle, yFirst + 1, yMiddle - 1);
+			calculateColumn(framebuffer, kernel, escapeResult, xMiddle, yMiddle + 1, yLast - 1);
+			job.addPixelsRendered(insideWidth + insideHeight - 1);
+
+			RectangleTask topLeft = new RectangleTask(framebuffer, kernel, job, xFirst, yFirst, xMiddle, yMiddle);
+			RectangleTask topRight = new RectangleTask(framebuffer, kernel, job, xMiddle, yFirst, xLast, yMiddle);
+			RectangleTask bottomLeft = new RectangleTask(framebuffer, kernel, job, xFirst, yMiddle, xMiddle, yLast);
+			RectangleTask bottomRight = new RectangleTask(framebuffer, kernel, job, xMiddle, yMiddle, xLast, yLast);
+
+			if ((long) insideWidth * insideHeight >= FORK_THRESHOLD)
+			{
+				invokeAll(topLeft, topRight, bottomLeft, bottomRight);
+			}
+			else
+			{
+				topLeft.compute();
+				topRight.compute();
+				bottomLeft.compute();
+				bottomRight.compute();
+			}
+		}
+
+
+		/**
+		 * Calculates the ring of pixels just inside the border. A filament of the outside can be thinner than a pixel
+		 * and slip between two samples of the border, but it is very unlikely to slip between the samples of two rings
+		 * in a row, so the inside is only filled if both are inside the set
+		 */
+		private void calculateRing(EscapeResult escapeResult)
+		{
+			calculateRow(framebuffer, kernel, escapeResult, yFirst + 1, xFirst + 1, xLast - 1);
+			calculateRow(framebuffer, kernel, escapeResult, yLast - 1, xFirst + 1, xLast - 1);
+			calculateColumn(framebuffer, kernel, escapeResult, xFirst + 1, yFirst + 2, yLast - 2);
+			calculateColumn(framebuffer, kernel, escapeResult, xLast - 1, yFirst + 2, yLast - 2);
+			job.addPixelsRendered(2L * (xLast - xFirst - 1) + 2L * (yLast - yFirst - 1) - 4);
+		}
+
+
+		private boolean isBorderInterior()
+		{
+			float[] values = framebuffer.getValues();
+			int width = framebuffer.getWidth();
+
+			for (int x = xFirst; x <= xLast; x++)
+			{
+				if (values[yFirst * width + x] != Palette.INTERIOR || values[yLast * width + x] != Palette.INTERIOR)
+					return false;
+			}
+			for (int y = yFirst + 1; y < yLast; y++)
+			{
+				if (values[y * width + xFirst] != Palette.INTERIOR || values[y * width + xLast] != Palette.INTERIOR)
+					return false;
+			}
+			return true;
+		}
+
+	}
+
+}
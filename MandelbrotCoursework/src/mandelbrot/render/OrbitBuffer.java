@@ -0,0 +1,236 @@
+package mandelbrot.render;
+
+
+import java.util.Arrays;
+
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.EscapeTime;
+
+/**
+ * Keeps where the orbit of every pixel of a view stopped, so the view can be rendered again with a higher iteration
+ * limit without starting any orbit over. Pixels which escaped or were proven to be inside the set are read back as
+ * they were, and only the pixels which ran out of iterations carry on from their last z. Each pixel's state records
+ * how far it got, so the buffer stays usable even when a render is abandoned part way through. Pixels which were never
+ * calculated, such as those filled by Mariani-Silver or read from the tile cache, are calculated from the start
+ */
+public class OrbitBuffer
+{
+
+	private static final byte UNKNOWN = 0;
+	private static final byte ESCAPED = 1;
+	private static final byte PROVEN_INTERIOR = 2;
+	private static final byte UNFINISHED = 3;
+
+	private Viewport viewport;
+	private String formula;
+	private int width;
+	private int height;
+	private byte[] states;
+	private int[] iterations;
+	private double[] zReal;
+	private double[] zImaginary;
+
+
+	/**
+	 * Gets the buffer ready to record a render, keeping the orbits already recorded if they are for the same view and
+	 * formula, otherwise forgetting them. If the view has only been panned, the orbits are moved with it and only those
+	 * of the newly exposed pixels are forgotten
+	 *
+	 * @param viewport
+	 *            The view about to be rendered
+	 * @param formula
+	 *            Names the fractal and any option which changes how the orbits are iterated
+	 * @return <b>resumable</b> True if the orbits of an earlier render of the view were kept
+	 */
+	public boolean prepare(Viewport viewport, String formula)
+	{
+		if (viewport.equals(this.viewport) && formula.equals(this.formula))
+			return true;
+
+		if (viewport.isPannedFrom(this.viewport) && formula.equals(this.formula))
+		{
+			shift((int) (viewport.getRealIndex() - this.viewport.getRealIndex()), (int) (viewport.getImaginaryIndex() - this.viewport
+					.getImaginaryIndex()));
+			this.viewport = viewport;
+			return true;
+		}
+
+		int pixels = viewport.getWidth() * viewport.getHeight();
+		if (states == null || states.length < pixels)
+		{
+			states = new byte[pixels];
+			iterations = new int[pixels];
+			zReal = new double[pixels];
+			zImaginary = new double[pixels];
+		}
+		else
+			Arrays.fill(states, UNKNOWN);
+
+		this.viewport = viewport;
+		this.formula = formula;
+		this.width = viewport.getWidth();
+		this.height = viewport.getHeight();
+		return false;
+	}
+
+
+	/**
+	 * Moves every recorded orbit so that pixel (x, y) takes the orbit of pixel (x + dx, y + dy), and forgets the pixels
+	 * with nothing to take
+	 */
+	private void shift(int dx, int dy)
+	{
+		if (Math.abs(dx) >= width || Math.abs(dy) >= height)
+		{
+			Arrays.fill(states, UNKNOWN);
+			return;
+		}
+
+		// Rows are moved in the order that never overwrites a row before it has been copied
+		int length = width - Math.abs(dx);
+		int xFrom = Math.max(0, dx);
+		int xTo = Math.max(0, -dx);
+		for (int i = 0; i < height; i++)
+		{
+			int y = dy >= 0 ? i : height - 1 - i;
+			int row = y * width;
+			if (y + dy < 0 || y + dy >= height)
+			{
+				Arrays.fill(states, row, row + width, UNKNOWN);
+				continue;
+			}
+
+			int from = (y + dy) * width + xFrom;
+			int to = row + xTo;
+			System.arraycopy(states, from, states, to, length);
+			System.arraycopy(iterations, from, iterations, to, length);
+			System.arraycopy(zReal, from, zReal, to, length);
+			System.arraycopy(zImaginary, from, zImaginary, to, length);
+			Arrays.fill(states, dx >= 0 ? row + length : row, dx >= 0 ? row + width : row + xTo, UNKNOWN);
+		}
+	}
+
+
+	/**
+	 * Stores where a pixel's orbit stopped. Pixels are only ever written by the thread calculating them
+	 *
+	 * @param x
+	 *            The column of the pixel
+	 * @param y
+	 *            The row of the pixel
+	 * @param result
+	 *            The result the kernel gave for the pixel
+	 */
+	public void record(int x, int y, EscapeResult result)
+	{
+		int index = y * width + x;
+		if (result.isEscaped())
+		{
+			states[index] = ESCAPED;
+			iterations[index] = result.getIterations();
+		}
+		else if (result.getInteriorCheck() != EscapeTime.INTERIOR_NONE)
+		{
+			states[index] = PROVEN_INTERIOR;
+			iterations[index] = result.getInteriorCheck();
+		}
+		else
+		{
+			states[index] = UNFINISHED;
+			iterations[index] = result.getIterations();
+		}
+		zReal[index] = result.getzReal();
+		zImaginary[index] = result.getzImaginary();
+	}
+
+
+	/**
+	 * Works out a pixel's result from its recorded orbit, iterating it further if it ran out of iterations under a
+	 * lower limit
+	 *
+	 * @param x
+	 *            The column of the pixel
+	 * @param y
+	 *            The row of the pixel
+	 * @param cReal
+	 *            The real part of the pixel's c
+	 * @param cImaginary
+	 *            The imaginary part of the pixel's c
+	 * @param maxIterations
+	 *            The iteration limit of the render
+	 * @param interiorChecks
+	 *            Whether to watch for the orbit falling into a cycle while it is iterated further
+	 * @param result
+	 *            Receives the result of the pixel
+	 * @return <b>resumed</b> True if the result was worked out from the recorded orbit, false if nothing usable was
+	 *         recorded for the pixel and it has to be calculated from the start
+	 */
+	public boolean resume(int x, int y, double cReal, double cImaginary, int maxIterations, boolean interiorChecks, EscapeResult result)
+	{
+		int index = y * width + x;
+		switch (states[index])
+		{
+			case ESCAPED:
+				// An orbit which escaped after more iterations than the new limit allows has no recorded z to stop at
+				if (iterations[index] > maxIterations)
+					return false;
+				result.setResumed(true, iterations[index], EscapeTime.INTERIOR_NONE, zReal[index], zImaginary[index]);
+				return true;
+
+			case PROVEN_INTERIOR:
+				result.setResumed(false, maxIterations, iterations[index], zReal[index], zImaginary[index]);
+				return true;
+
+			case UNFINISHED:
+				if (iterations[index] > maxIterations)
+					return false;
+				EscapeTime.mandelbrot(cReal, cImaginary, zReal[index], zImaginary[index], iterations[index], maxIterations, interiorChecks,
+						result);
+				return true;
+
+			default:
+				return false;
+		}
+	}
+
+
+	/**
+	 * Copies the recorded orbits of the pixels a render copied from their reflection in the real axis. The orbit of
+	 * the conjugate of c is the conjugate of the orbit of c, so each copy stops after the same number of iterations
+	 * at the conjugate of the same z
+	 *
+	 * @param symmetry
+	 *            The reflection in the real axis the render used
+	 */
+	public void mirror(Symmetry symmetry)
+	{
+		if (symmetry.isReflectingColumns())
+			throw new IllegalArgumentException("The orbits of the Mandelbrot set are only symmetric about the real axis");
+
+		for (int y = symmetry.getMirroredStart(); y < symmetry.getMirroredEnd(); y++)
+		{
+			int row = y * width;
+			int sourceRow = symmetry.getSourceRow(y) * width;
+			System.arraycopy(states, sourceRow, states, row, width);
+			System.arraycopy(iterations, sourceRow, iterations, row, width);
+			System.arraycopy(zReal, sourceRow, zReal, row, width);
+			for (int x = 0; x < width; x++)
+			{
+				zImaginary[row + x] = -zImaginary[sourceRow + x];
+			}
+		}
+	}
+
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+}
@@ -0,0 +1,115 @@
+package mandelbrot.render;
+
+
+import java.awt.Color;
+
+/**
+ * Maps the smooth value of a pixel to an ARGB colour with a precomputed table, instead of calling
+ * {@link Color#HSBtoRGB(float, float, float)} for every pixel. The colours follow the hue formula the panels have
+ * always used, hue = offset + scale * value, at a fixed saturation and brightness, and because HSB colours are linear
+ * in hue within each sixth of the wheel, interpolating between table entries reproduces them almost exactly
+ * 
+ * Pixels store their value rather than their colour alone, so a framebuffer can be recoloured with a different
+ * palette without calculating the fractal again
+ */
+public class Palette
+{
+
+	/**
+	 * The value of a pixel that never escaped
+	 */
+	public static final float INTERIOR = Float.NEGATIVE_INFINITY;
+
+	/**
+	 * The number of table entries, a multiple of 6 so every corner of the hue wheel falls on an entry
+	 */
+	public static final int RESOLUTION = 6 * 1024;
+
+	public static final Palette OCEAN = new Palette("Ocean", 0.65f, 5, 0.6f, 1.0f);
+	public static final Palette ROSE = new Palette("Rose", 0.95f, 10, 0.6f, 1.0f);
+	public static final Palette VIVID = new Palette("Vivid", 0.0f, 3, 1.0f, 1.0f);
+	public static final Palette EMBER = new Palette("Ember", 0.0f, 0.5f, 0.9f, 1.0f);
+
+	/**
+	 * The palettes offered in the info panel
+	 */
+	public static final Palette[] PRESETS = { OCEAN, ROSE, VIVID, EMBER };
+
+	private final String name;
+	private final float hueOffset;
+	private final float hueScale;
+	private final int interiorColour;
+	private final int[] red = new int[RESOLUTION + 1];
+	private final int[] green = new int[RESOLUTION + 1];
+	private final int[] blue = new int[RESOLUTION + 1];
+
+
+	/**
+	 * Builds the colour table for the hue formula hue = hueOffset + hueScale * value
+	 * 
+	 * @param name
+	 *            The name shown in the info panel
+	 * @param hueOffset
+	 *            The hue of a value of 0
+	 * @param hueScale
+	 *            How far round the hue wheel a value of 1 moves
+	 * @param saturation
+	 *            The saturation of every colour
+	 * @param brightness
+	 *            The brightness of every colour
+	 */
+	public Palette(String name, float hueOffset, float hueScale, float saturation, float brightness)
+	{
+		this.name = name;
+		this.hueOffset = hueOffset;
+		this.hueScale = hueScale;
+		this.interiorColour = Color.BLACK.getRGB();
+
+		for (int i = 0; i <= RESOLUTION; i++)
+		{
+			int rgb = Color.HSBtoRGB((float) i / RESOLUTION, saturation, brightness);
+			red[i] = (rgb >> 16) & 0xff;
+			green[i] = (rgb >> 8) & 0xff;
+			blue[i] = rgb & 0xff;
+		}
+	}
+
+
+	/**
+	 * @param value
+	 *            The smooth value of a pixel, or {@link #INTERIOR}
+	 * @return <b>color</b> The ARGB colour of the pixel
+	 */
+	public int colour(float value)
+	{
+		if (value == INTERIOR)
+			return interiorColour;
+
+		// Only the fractional part of the hue matters, the wheel repeats every whole turn
+		float hue = hueOffset + hueScale * value;
+		double position = (hue - Math.floor(hue)) * RESOLUTION;
+		int index = (int) position;
+		if (index >= RESOLUTION)
+			index = RESOLUTION - 1;
+		double fraction = position - index;
+
+		int r = (int) (red[index] + (red[index + 1] - red[index]) * fraction + 0.5);
+		int g = (int) (green[index] + (green[index + 1] - green[index]) * fraction + 0.5);
+		int b = (int) (blue[index] + (blue[index + 1] - blue[index]) * fraction + 0.5);
+		return 0xff000000 | (r << 16) | (g << 8) | b;
+	}
+
+
+	public String getName()
+	{
+		return name;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+
+}
@@ -0,0 +1,26 @@
+package mandelbrot.render;
+
+
+import mandelbrot.maths.EscapeResult;
+
+/**
+ * Calculates the smooth value of a single pixel, which a {@link Palette} turns into its colour. Renderers decide which
+ * pixels to ask for and in what order, and store the final |z|^2 the kernel leaves in the escape result alongside the
+ * value
+ */
+public interface PixelKernel
+{
+
+	/**
+	 * @param x
+	 *            The column of the pixel
+	 * @param y
+	 *            The row of the pixel
+	 * @param escapeResult
+	 *            Scratch space for the escape time kernel, owned by the calling thread, which holds the final state of
+	 *            the pixel's orbit when this returns
+	 * @return <b>value</b> The smooth value of the pixel, or {@link Palette#INTERIOR} if it never escaped
+	 */
+	float valueAt(int x, int y, EscapeResult escapeResult);
+
+}
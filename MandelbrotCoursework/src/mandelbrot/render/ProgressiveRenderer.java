@@ -0,0 +1,143 @@
+package mandelbrot.render;
+
+/**
+ * Renders an image coarse to fine. The first pass calculates every 8th pixel in each direction and fills the blocks
+ * between them, and each following pass halves the spacing until every pixel is exact. A pass only calculates the
+ * samples the previous passes did not, so no pixel is calculated twice, and the image is handed to a listener after
+ * every pass so a preview can be shown while the rest is still being calculated
+ */
+public class ProgressiveRenderer
+{
+
+	public static final int DEFAULT_INITIAL_STEP = 8;
+
+	private final TileRenderer tileRenderer;
+	private final int initialStep;
+
+	private volatile long lastTimeToFirstImage;
+	private volatile long lastTimeToFinalImage;
+
+
+	/**
+	 * @param tileRenderer
+	 *            The renderer each pass is run on
+	 * @param initialStep
+	 *            The spacing of the first pass, which must be a power of two
+	 */
+	public ProgressiveRenderer(TileRenderer tileRenderer, int initialStep)
+	{
+		if (initialStep < 1 || Integer.bitCount(initialStep) != 1)
+			throw new IllegalArgumentException("The initial step must be a power of two, was " + initialStep);
+
+		this.tileRenderer = tileRenderer;
+		this.initialStep = initialStep;
+	}
+
+
+	/**
+	 * Renders the image in passes, stopping early if the job is cancelled
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param kernel
+	 *            Calculates the colour of each pixel
+	 * @param job
+	 *            The job the image is being rendered for
+	 * @param listener
+	 *            Told about the image after each pass, may be null
+	 * @return <b>finished</b> True if the final pass was finished, false if the job was cancelled first
+	 */
+	public boolean render(Framebuffer framebuffer, PixelKernel kernel, RenderJob<?> job, PassListener listener)
+	{
+		return render(framebuffer, kernel, job, listener, 0, 0, framebuffer.getWidth(), framebuffer.getHeight());
+	}
+
+
+	/**
+	 * Renders one rectangle of the image in passes, leaving the rest of the image as it was. The samples of each pass
+	 * stay on the grid of the whole image, so the rows and columns between the edge of the rectangle and its first
+	 * sample are only filled in by the finer passes
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param kernel
+	 *            Calculates the colour of each pixel
+	 * @param job
+	 *            The job the image is being rendered for
+	 * @param listener
+	 *            Told about the image after each pass, may be null
+	 * @param xStart
+	 *            The first column, inclusive
+	 * @param yStart
+	 *            The first row, inclusive
+	 * @param xEnd
+	 *            The last column, exclusive
+	 * @param yEnd
+	 *            The last row, exclusive
+	 * @return <b>finished</b> True if the final pass was finished, false if the job was cancelled first
+	 */
+	public boolean render(Framebuffer framebuffer, PixelKernel kernel, RenderJob<?> job, PassListener listener, int xStart, int yStart,
+			int xEnd, int yEnd)
+	{
+		long startTime = System.nanoTime();
+
+		for (int step = initialStep; step >= 1; step /= 2)
+		{
+			if (!tileRenderer.render(framebuffer, new SampledTileKernel(kernel, step, step != initialStep), job, xStart, yStart, xEnd, yEnd))
+				return false;
+
+			if (step == initialStep)
+				lastTimeToFirstImage = System.nanoTime() - startTime;
+
+			if (listener != null)
+				listener.passCompleted(framebuffer, step);
+		}
+
+		lastTimeToFinalImage = System.nanoTime() - startTime;
+		return true;
+	}
+
+
+	/**
+	 * @return <b>lastTimeToFirstImage</b> The time in nanoseconds the last completed render took to produce its
+	 *         first, coarsest pass
+	 */
+	public long getLastTimeToFirstImage()
+	{
+		return lastTimeToFirstImage;
+	}
+
+
+	/**
+	 * @return <b>lastTimeToFinalImage</b> The time in nanoseconds the last completed render took to produce its exact
+	 *         image
+	 */
+	public long getLastTimeToFinalImage()
+	{
+		return lastTimeToFinalImage;
+	}
+
+
+	public int getInitialStep()
+	{
+		return initialStep;
+	}
+
+
+	/**
+	 * Notified each time a pass of a progressive render is finished
+	 */
+	public interface PassListener
+	{
+
+		/**
+		 * @param framebuffer
+		 *            The image being rendered, which later passes will keep writing into
+		 * @param step
+		 *            The spacing of the samples of the pass that just finished, 1 for the final pass
+		 */
+		void passCompleted(Framebuffer framebuffer, int step);
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package mandelbrot.render;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One render taken from a {@link RenderScheduler}, tagged with the generation it was submitted as. As soon as a newer
+ * state is submitted the job is cancelled, and renderers are expected to check {@link #isCancelled()} at tile or row
+ * boundaries and give up on the frame
+ * 
+ * @param <S>
+ *            The type describing what should be rendered
+ */
+public class RenderJob<S>
+{
+
+	private final RenderScheduler<S> scheduler;
+	private final S state;
+	private final long generation;
+	private final long startTime;
+	private final AtomicLong pixelsRendered = new AtomicLong();
+
+
+	RenderJob(RenderScheduler<S> scheduler, S state, long generation)
+	{
+		this.scheduler = scheduler;
+		this.state = state;
+		this.generation = generation;
+		this.startTime = System.nanoTime();
+	}
+
+
+	/**
+	 * @return <b>cancelled</b> True if a newer state has been submitted since this job was, meaning the result of this
+	 *         job will never be shown
+	 */
+	public boolean isCancelled()
+	{
+		return scheduler.getLatestGeneration() != generation;
+	}
+
+
+	/**
+	 * Records that a number of pixels have been calculated, so the work thrown away by a cancelled job can be counted
+	 * 
+	 * @param pixels
+	 *            The number of pixels just calculated
+	 */
+	public void addPixelsRendered(long pixels)
+	{
+		pixelsRendered.addAndGet(pixels);
+	}
+
+
+	public S getState()
+	{
+		return state;
+	}
+
+
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+
+	public long getStartTime()
+	{
+		return startTime;
+	}
+
+
+	public long getPixelsRendered()
+	{
+		return pixelsRendered.get();
+	}
+
+}
@@ -0,0 +1,39 @@
+package mandelbrot.render;
+
+/**
+ * The ways the Mandelbrot panel can be rendered
+ */
+public enum RenderMode
+{
+	/**
+	 * Every pixel is calculated, tile by tile
+	 */
+	TILED("Tiled"),
+
+	/**
+	 * Every pixel is calculated, coarse passes first so a preview is shown early
+	 */
+	PROGRESSIVE("Progressive"),
+
+	/**
+	 * Rectangles whose border is inside the set are filled without calculating their inside. Faster over large areas of
+	 * the inside, but a filament of the outside thinner than a pixel could in principle be filled over
+	 */
+	MARIANI_SILVER("Mariani-Silver");
+
+	private final String displayName;
+
+
+	private RenderMode(String displayName)
+	{
+		this.displayName = displayName;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return displayName;
+	}
+
+}
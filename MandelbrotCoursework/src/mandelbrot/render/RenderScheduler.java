@@ -0,0 +1,185 @@
+package mandelbrot.render;
+
+/**
+ * Hands render requests from the Swing thread to a render thread. The render thread blocks in {@link #take()} until a
+ * request arrives instead of polling a flag, and requests that arrive while one is already waiting replace it, so a
+ * burst of requests is coalesced into a single render of the most recent state. Every submission starts a new
+ * generation, which cancels the {@link RenderJob} currently being rendered
+ * 
+ * @param <S>
+ *            The type describing what should be rendered
+ */
+public class RenderScheduler<S>
+{
+
+	private S pending;
+	private volatile long latestGeneration;
+	private long submittedCount;
+	private long droppedCount;
+	private long takenCount;
+	private long completedCount;
+	private long cancelledCount;
+	private long wastedPixelCount;
+	private long wastedNanos;
+	private long lastFrameNanos;
+
+
+	/**
+	 * Queues a state to be rendered, replacing any state that is still waiting and cancelling the job being rendered
+	 * 
+	 * @param state
+	 *            The state to render
+	 */
+	public synchronized void submit(S state)
+	{
+		if (state == null)
+			throw new IllegalArgumentException("Cannot schedule a null state");
+
+		if (pending != null)
+			droppedCount++;
+
+		pending = state;
+		latestGeneration++;
+		submittedCount++;
+		notifyAll();
+	}
+
+
+	/**
+	 * Blocks until a state is waiting, then removes it and wraps it in a job tagged with the current generation
+	 * 
+	 * @return <b>job</b> A job for the most recently submitted state
+	 * @throws InterruptedException
+	 *             If the render thread is interrupted while waiting
+	 */
+	public synchronized RenderJob<S> take() throws InterruptedException
+	{
+		while (pending == null)
+		{
+			wait();
+		}
+
+		S state = pending;
+		pending = null;
+		takenCount++;
+		return new RenderJob<S>(this, state, latestGeneration);
+	}
+
+
+	/**
+	 * Records that a job ran to the end and its result was shown, and how long it took from being taken
+	 * 
+	 * @param job
+	 *            The finished job
+	 */
+	public synchronized void recordCompleted(RenderJob<S> job)
+	{
+		completedCount++;
+		lastFrameNanos = System.nanoTime() - job.getStartTime();
+	}
+
+
+	/**
+	 * Records that a job was abandoned because a newer state arrived, counting the pixels and time it spent as wasted
+	 * 
+	 * @param job
+	 *            The abandoned job
+	 */
+	public synchronized void recordCancelled(RenderJob<S> job)
+	{
+		cancelledCount++;
+		wastedPixelCount += job.getPixelsRendered();
+		wastedNanos += System.nanoTime() - job.getStartTime();
+	}
+
+
+	long getLatestGeneration()
+	{
+		return latestGeneration;
+	}
+
+
+	/**
+	 * @return <b>depth</b> The number of states waiting to be rendered, which is never more than one
+	 */
+	public synchronized int getQueueDepth()
+	{
+		return pending == null ? 0 : 1;
+	}
+
+
+	public synchronized long getSubmittedCount()
+	{
+		return submittedCount;
+	}
+
+
+	/**
+	 * @return <b>droppedCount</b> The number of states that were replaced by a newer one before being rendered
+	 */
+	public synchronized long getDroppedCount()
+	{
+		return droppedCount;
+	}
+
+
+	public synchronized long getTakenCount()
+	{
+		return takenCount;
+	}
+
+
+	public synchronized long getCompletedCount()
+	{
+		return completedCount;
+	}
+
+
+	public synchronized long getCancelledCount()
+	{
+		return cancelledCount;
+	}
+
+
+	/**
+	 * @return <b>lastFrameNanos</b> The time the most recently completed job took from being taken to finishing, in
+	 *         nanoseconds
+	 */
+	public synchronized long getLastFrameNanos()
+	{
+		return lastFrameNanos;
+	}
+
+
+	/**
+	 * @return <b>wastedPixelCount</b> The number of pixels calculated by jobs that were later cancelled
+	 */
+	public synchronized long getWastedPixelCount()
+	{
+		return wastedPixelCount;
+	}
+
+
+	/**
+	 * @return <b>wastedNanos</b> The time spent in jobs that were later cancelled, in nanoseconds
+	 */
+	public synchronized long getWastedNanos()
+	{
+		return wastedNanos;
+	}
+
+
+	/**
+	 * Summarises how requests have been coalesced and how much work cancelled renders threw away, for the render log
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		return submittedCount + " requests, " + droppedCount + " merged into a later one, " + takenCount + " rendered, " + completedCount
+				+ " completed, " + cancelledCount + " cancelled part way, " + getQueueDepth() + " waiting, last frame " + lastFrameNanos
+				/ 1000000 + "ms, " + wastedPixelCount + " pixels and " + wastedNanos / 1000000 + "ms wasted on cancelled renders";
+	}
+
+}
@@ -0,0 +1,36 @@
+package mandelbrot.render;
+
+
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.LaneEscapeTime;
+
+/**
+ * A {@link PixelKernel} which can also calculate a run of evenly spaced pixels of one row in a single call, so the
+ * points can be iterated together by a {@link LaneEscapeTime}. Renderers that work on runs of pixels use this when a
+ * kernel offers it, and every other renderer falls back to asking for one pixel at a time
+ */
+public interface RowKernel extends PixelKernel
+{
+
+	/**
+	 * @param first
+	 *            The column of the first pixel
+	 * @param stride
+	 *            The distance in pixels between the columns of the run
+	 * @param y
+	 *            The row of the pixels
+	 * @param count
+	 *            The number of pixels
+	 * @param values
+	 *            Receives the smooth value of each pixel, or {@link Palette#INTERIOR} for pixels that never escaped
+	 * @param moduli
+	 *            Receives the final |z|^2 of each pixel's orbit
+	 * @param lanes
+	 *            Lane state for the batched kernel, owned by the calling thread
+	 * @param escapeResult
+	 *            Scratch space for reading back each pixel's result, owned by the calling thread
+	 */
+	void valuesAt(int first, int stride, int y, int count, float[] values, float[] moduli, LaneEscapeTime lanes,
+			EscapeResult escapeResult);
+
+}
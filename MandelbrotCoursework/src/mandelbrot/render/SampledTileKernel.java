@@ -0,0 +1,111 @@
+package mandelbrot.render;
+
+
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.LaneEscapeTime;
+
+/**
+ * Renders a tile by sampling every step-th pixel in each direction and filling the step x step block below and to the
+ * right of each sample with its value. With a step of 1 this is a plain per pixel render. If the kernel is a
+ * {@link RowKernel} the samples of each row of the tile are calculated in one call, otherwise one at a time
+ */
+public class SampledTileKernel implements TileKernel
+{
+
+	private final PixelKernel kernel;
+	private final int step;
+	private final boolean skipCoarserSamples;
+
+
+	/**
+	 * @param kernel
+	 *            Calculates the value of each sample
+	 * @param step
+	 *            The distance in pixels between samples
+	 * @param skipCoarserSamples
+	 *            If true, samples which also lie on the grid of twice the step are skipped, because a previous pass
+	 *            has already calculated them
+	 */
+	public SampledTileKernel(PixelKernel kernel, int step, boolean skipCoarserSamples)
+	{
+		this.kernel = kernel;
+		this.step = step;
+		this.skipCoarserSamples = skipCoarserSamples;
+	}
+
+
+	@Override
+	public void renderTile(Framebuffer framebuffer, int xStart, int yStart, int xEnd, int yEnd)
+	{
+		EscapeResult escapeResult = new EscapeResult();
+		int coarseStep = step * 2;
+
+		// Rounds the start of the tile up to the first sample inside it
+		int xFirst = ((xStart + step - 1) / step) * step;
+		int yFirst = ((yStart + step - 1) / step) * step;
+
+		if (kernel instanceof RowKernel)
+		{
+			renderRows((RowKernel) kernel, framebuffer, xFirst, yFirst, xEnd, yEnd, escapeResult);
+			return;
+		}
+
+		for (int y = yFirst; y < yEnd; y += step)
+		{
+			for (int x = xFirst; x < xEnd; x += step)
+			{
+				if (skipCoarserSamples && x % coarseStep == 0 && y % coarseStep == 0)
+					continue;
+
+				float value = kernel.valueAt(x, y, escapeResult);
+				store(framebuffer, x, y, value, (float) escapeResult.getModulusSquared());
+			}
+		}
+	}
+
+
+	/**
+	 * Calculates the samples of each row of the tile with a single call to the kernel. On the rows a coarser pass has
+	 * already sampled, only every other sample is left, so those rows are run with twice the stride
+	 */
+	private void renderRows(RowKernel rowKernel, Framebuffer framebuffer, int xFirst, int yFirst, int xEnd, int yEnd,
+			EscapeResult escapeResult)
+	{
+		LaneEscapeTime lanes = new LaneEscapeTime();
+		float[] values = new float[(xEnd - xFirst + step - 1) / step];
+		float[] moduli = new float[values.length];
+		int coarseStep = step * 2;
+
+		for (int y = yFirst; y < yEnd; y += step)
+		{
+			int first = xFirst;
+			int stride = step;
+			if (skipCoarserSamples && y % coarseStep == 0)
+			{
+				if (first % coarseStep == 0)
+					first += step;
+				stride = coarseStep;
+			}
+
+			int count = first < xEnd ? (xEnd - first + stride - 1) / stride : 0;
+			if (count == 0)
+				continue;
+
+			rowKernel.valuesAt(first, stride, y, count, values, moduli, lanes, escapeResult);
+			for (int k = 0; k < count; k++)
+			{
+				store(framebuffer, first + k * stride, y, values[k], moduli[k]);
+			}
+		}
+	}
+
+
+	private void store(Framebuffer framebuffer, int x, int y, float value, float modulusSquared)
+	{
+		if (step == 1)
+			framebuffer.setValue(x, y, value, modulusSquared);
+		else
+			framebuffer.fill(x, y, x + step, y + step, value, modulusSquared);
+	}
+
+}
@@ -0,0 +1,251 @@
+package mandelbrot.render;
+
+/**
+ * Describes which part of an image can be copied from a reflection of another part instead of being calculated. The
+ * Mandelbrot set is symmetric about the real axis, since the orbit of the conjugate of c is the conjugate of the orbit
+ * of c, and every Julia set of z^2 + c is symmetric through the origin, since z and -z have the same square. When the
+ * line or point of symmetry crosses the image, the pixels on one side of it are calculated and the pixels on the
+ * other side with a reflection inside the image are copied from it
+ *
+ * The image is split into a band of rows to calculate and a band of rows to copy. The band to copy is on whichever
+ * side of the axis is nearer the edge of the image, so the rows to calculate are always one band. A reflection through
+ * the origin also reflects the columns, so in the rows to copy only the columns whose reflection is inside the image
+ * are copied, and the rest have to be calculated too. A reflection only exists if the axis lies on a row or exactly
+ * between two rows, and on a column or exactly between two columns for a reflection through the origin
+ *
+ * Only views on the global grid are reflected. There every pixel is a whole number of spacings from the origin, so a
+ * pixel and its reflection have exactly opposite coordinates and the copy is identical to calculating it. Elsewhere
+ * the coordinates are rounded differently on either side of the axis, and a pixel near the edge of the set could be
+ * copied from a neighbour that escapes when it does not
+ */
+public final class Symmetry
+{
+
+	/**
+	 * How far, as a fraction of a pixel, the axis may be from a row or the middle of two rows and still be used, which
+	 * only has to allow for the rounding of the first pixel's coordinate, since on the global grid the axis is always
+	 * exactly on a row or between two rows
+	 */
+	private static final double TOLERANCE = 1e-6;
+
+	private final int width;
+	private final boolean reflectsColumns;
+	private final int xSum;
+	private final int ySum;
+	private final int computedStart, computedEnd;
+	private final int mirroredStart, mirroredEnd;
+	private final int mirroredXStart, mirroredXEnd;
+
+
+	private Symmetry(int width, int height, boolean reflectsColumns, int xSum, int ySum)
+	{
+		this.width = width;
+		this.reflectsColumns = reflectsColumns;
+		this.xSum = xSum;
+		this.ySum = ySum;
+
+		// A reflection maps row y to row ySum - y, so the axis is at ySum / 2
+		if (ySum <= height - 1)
+		{
+			mirroredStart = 0;
+			mirroredEnd = (ySum + 1) / 2;
+			computedStart = mirroredEnd;
+			computedEnd = height;
+		}
+		else
+		{
+			computedStart = 0;
+			computedEnd = ySum / 2 + 1;
+			mirroredStart = computedEnd;
+			mirroredEnd = height;
+		}
+
+		mirroredXStart = reflectsColumns ? Math.max(0, xSum - width + 1) : 0;
+		mirroredXEnd = reflectsColumns ? Math.min(width, xSum + 1) : width;
+	}
+
+
+	/**
+	 * @param viewport
+	 *            The view of the Mandelbrot set to draw
+	 * @return <b>symmetry</b> The reflection of the view in the real axis, or null if the view is not on the grid or
+	 *         the axis does not cross it on or exactly between its rows
+	 */
+	public static Symmetry conjugate(Viewport viewport)
+	{
+		if (!viewport.isAligned())
+			return null;
+
+		int ySum = reflectionSum(viewport.imaginaryAt(0), viewport.getImaginarySpacing(), viewport.getHeight());
+		if (ySum < 0)
+			return null;
+		return new Symmetry(viewport.getWidth(), viewport.getHeight(), false, 0, ySum);
+	}
+
+
+	/**
+	 * @param viewport
+	 *            The view of a Julia set to draw
+	 * @return <b>symmetry</b> The reflection of the view through the origin, or null if the view is not on the grid
+	 *         or the origin does not lie in it on or exactly between its rows and columns
+	 */
+	public static Symmetry origin(Viewport viewport)
+	{
+		if (!viewport.isAligned())
+			return null;
+
+		int xSum = reflectionSum(viewport.realAt(0), viewport.getRealSpacing(), viewport.getWidth());
+		int ySum = reflectionSum(viewport.imaginaryAt(0), viewport.getImaginarySpacing(), viewport.getHeight());
+		if (xSum < 0 || ySum < 0)
+			return null;
+		return new Symmetry(viewport.getWidth(), viewport.getHeight(), true, xSum, ySum);
+	}
+
+
+	/**
+	 * Finds the sum of the indices of every pair of pixels which reflect on to each other along one axis, which is
+	 * twice the position of the line of symmetry in pixels
+	 *
+	 * @param first
+	 *            The coordinate of the first pixel
+	 * @param spacing
+	 *            The distance between pixels
+	 * @param count
+	 *            The number of pixels
+	 * @return <b>sum</b> The sum, or -1 if the line of symmetry is not on or exactly between pixels, or so near the
+	 *         edge that no pixel has a reflection inside the image
+	 */
+	private static int reflectionSum(double first, double spacing, int count)
+	{
+		double position = -2 * first / spacing;
+		double sum = Math.rint(position);
+		if (Math.abs(position - sum) > TOLERANCE || sum < 1 || sum > 2 * count - 3)
+			return -1;
+		return (int) sum;
+	}
+
+
+	/**
+	 * Copies the values of the pixels to copy from their reflections, which must already be calculated
+	 *
+	 * @param values
+	 *            The value of each pixel, row by row
+	 * @param moduli
+	 *            The final |z|^2 of each pixel, in the same order
+	 */
+	public void mirror(float[] values, float[] moduli)
+	{
+		for (int y = mirroredStart; y < mirroredEnd; y++)
+		{
+			int row = y * width;
+			int sourceRow = (ySum - y) * width;
+			if (!reflectsColumns)
+			{
+				System.arraycopy(values, sourceRow, values, row, width);
+				System.arraycopy(moduli, sourceRow, moduli, row, width);
+				continue;
+			}
+
+			for (int x = mirroredXStart; x < mirroredXEnd; x++)
+			{
+				values[row + x] = values[sourceRow + xSum - x];
+				moduli[row + x] = moduli[sourceRow + xSum - x];
+			}
+		}
+	}
+
+
+	/**
+	 * @return <b>reflectsColumns</b> True for a reflection through the origin, false for a reflection in the real axis
+	 */
+	public boolean isReflectingColumns()
+	{
+		return reflectsColumns;
+	}
+
+
+	/**
+	 * @param x
+	 *            A column whose pixels are copied
+	 * @return <b>column</b> The column they are copied from
+	 */
+	public int getSourceColumn(int x)
+	{
+		return reflectsColumns ? xSum - x : x;
+	}
+
+
+	/**
+	 * @param y
+	 *            A row whose pixels are copied
+	 * @return <b>row</b> The row they are copied from
+	 */
+	public int getSourceRow(int y)
+	{
+		return ySum - y;
+	}
+
+
+	/**
+	 * @return <b>computedStart</b> The first row to calculate, inclusive
+	 */
+	public int getComputedStart()
+	{
+		return computedStart;
+	}
+
+
+	/**
+	 * @return <b>computedEnd</b> The last row to calculate, exclusive
+	 */
+	public int getComputedEnd()
+	{
+		return computedEnd;
+	}
+
+
+	/**
+	 * @return <b>mirroredStart</b> The first row to copy, inclusive
+	 */
+	public int getMirroredStart()
+	{
+		return mirroredStart;
+	}
+
+
+	/**
+	 * @return <b>mirroredEnd</b> The last row to copy, exclusive
+	 */
+	public int getMirroredEnd()
+	{
+		return mirroredEnd;
+	}
+
+
+	/**
+	 * @return <b>mirroredXStart</b> The first column of the rows to copy which is copied, inclusive
+	 */
+	public int getMirroredXStart()
+	{
+		return mirroredXStart;
+	}
+
+
+	/**
+	 * @return <b>mirroredXEnd</b> The last column of the rows to copy which is copied, exclusive
+	 */
+	public int getMirroredXEnd()
+	{
+		return mirroredXEnd;
+	}
+
+
+	/**
+	 * @return <b>mirroredPixels</b> The number of pixels copied rather than calculated
+	 */
+	public long getMirroredPixels()
+	{
+		return (long) (mirroredEnd - mirroredStart) * (mirroredXEnd - mirroredXStart);
+	}
+
+}
@@ -0,0 +1,235 @@
+package mandelbrot.render;
+
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the values of recently rendered tiles of the global grid in memory, so views which go back over an area
+ * already drawn only calculate the tiles they have not seen before. Once the tiles take up more than the memory
+ * budget, the ones used least recently are thrown away first. The memory can be backed by a {@link DiskTileCache},
+ * which tiles missing from memory are looked for in, and new tiles are written through to
+ */
+public class TileCache
+{
+
+	public static final int TILE_SIZE = 64;
+
+	/**
+	 * The length of the array holding a tile, the smooth value of each pixel row by row, followed by the final |z|^2
+	 * of each pixel in the same order
+	 */
+	public static final int TILE_VALUES = 2 * TILE_SIZE * TILE_SIZE;
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private static final long TILE_BYTES = (long) TILE_VALUES * 4;
+
+	private final long maxBytes;
+	private final DiskTileCache disk;
+	private final LinkedHashMap<TileKey, float[]> tiles = new LinkedHashMap<TileKey, float[]>(16, 0.75f, true);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder diskHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+
+	public TileCache()
+	{
+		this(DEFAULT_MAX_BYTES);
+	}
+
+
+	/**
+	 * @param maxBytes
+	 *            The most memory the values of the tiles may take up, a budget smaller than one tile keeps nothing
+	 */
+	public TileCache(long maxBytes)
+	{
+		this(maxBytes, null);
+	}
+
+
+	/**
+	 * @param maxBytes
+	 *            The most memory the values of the tiles may take up, a budget smaller than one tile keeps nothing
+	 * @param disk
+	 *            The cache on disk behind this one, or null to keep tiles in memory only
+	 */
+	public TileCache(long maxBytes, DiskTileCache disk)
+	{
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("The memory budget cannot be negative, was " + maxBytes);
+
+		this.maxBytes = maxBytes;
+		this.disk = disk;
+	}
+
+
+	/**
+	 * @param key
+	 *            The tile to look up
+	 * @return <b>values</b> The values of the tile, laid out as described by {@link #TILE_VALUES}, which must not be
+	 *         changed, or null if the tile is not in memory or on disk
+	 */
+	public float[] get(TileKey key)
+	{
+		float[] values;
+		synchronized (this)
+		{
+			values = tiles.get(key);
+		}
+		if (values != null)
+		{
+			hits.increment();
+			return values;
+		}
+
+		// The disk is read without holding the lock, so other threads can still use the tiles in memory meanwhile
+		values = disk != null ? disk.get(key) : null;
+		if (values != null)
+		{
+			diskHits.increment();
+			synchronized (this)
+			{
+				add(key, values);
+			}
+		}
+		else
+			misses.increment();
+		return values;
+	}
+
+
+	/**
+	 * Adds a tile, throwing away the least recently used tiles if the budget has been used up
+	 * 
+	 * @param key
+	 *            The tile being added
+	 * @param values
+	 *            The values of the tile, laid out as described by {@link #TILE_VALUES}, which the cache keeps rather than
+	 *            copying
+	 */
+	public void put(TileKey key, float[] values)
+	{
+		putAll(Collections.singletonMap(key, values));
+	}
+
+
+	/**
+	 * Adds a batch of tiles, and writes them through to the disk in one go
+	 * 
+	 * @param batch
+	 *            The tiles being added, and the values of their pixels, which the cache keeps rather than copying
+	 */
+	public void putAll(Map<TileKey, float[]> batch)
+	{
+		synchronized (this)
+		{
+			for (Map.Entry<TileKey, float[]> tile : batch.entrySet())
+			{
+				add(tile.getKey(), tile.getValue());
+			}
+		}
+		if (disk != null)
+			disk.putAll(batch);
+	}
+
+
+	/**
+	 * Records the tiles read from the disk so far in its index, so they are not the first evicted next time
+	 */
+	public void flush()
+	{
+		if (disk != null)
+			disk.flush();
+	}
+
+
+	private void add(TileKey key, float[] values)
+	{
+		if (values.length != TILE_VALUES)
+			throw new IllegalArgumentException("A tile has " + TILE_VALUES + " values, was given " + values.length);
+
+		tiles.put(key, values);
+
+		Iterator<Map.Entry<TileKey, float[]>> eldest = tiles.entrySet().iterator();
+		while (tiles.size() * TILE_BYTES > maxBytes && eldest.hasNext())
+		{
+			eldest.next();
+			eldest.remove();
+			evictions.increment();
+		}
+	}
+
+
+	public synchronized void clear()
+	{
+		tiles.clear();
+	}
+
+
+	public synchronized int size()
+	{
+		return tiles.size();
+	}
+
+
+	/**
+	 * @return <b>bytes</b> The memory taken up by the values of the tiles in the cache
+	 */
+	public synchronized long getBytes()
+	{
+		return tiles.size() * TILE_BYTES;
+	}
+
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+
+	/**
+	 * @return <b>diskHits</b> How many tiles missing from memory were found on disk
+	 */
+	public long getDiskHits()
+	{
+		return diskHits.sum();
+	}
+
+
+	public DiskTileCache getDisk()
+	{
+		return disk;
+	}
+
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return "Tile cache: " + size() + " tiles, " + getBytes() / 1024 + " of " + maxBytes / 1024 + " KB, " + getHits() + " hits, "
+				+ getDiskHits() + " from disk, " + getMisses() + " misses, " + getEvictions() + " evictions";
+	}
+
+}
@@ -0,0 +1,24 @@
+package mandelbrot.render;
+
+/**
+ * Calculates the pixels of one rectangular tile of an image. Tiles handed to a kernel never overlap, so a kernel may
+ * be called from several threads at once as long as it keeps any scratch state local to the call
+ */
+public interface TileKernel
+{
+
+	/**
+	 * @param framebuffer
+	 *            The image being rendered into
+	 * @param xStart
+	 *            The first column of the tile, inclusive
+	 * @param yStart
+	 *            The first row of the tile, inclusive
+	 * @param xEnd
+	 *            The last column of the tile, exclusive
+	 * @param yEnd
+	 *            The last row of the tile, exclusive
+	 */
+	void renderTile(Framebuffer framebuffer, int xStart, int yStart, int xEnd, int yEnd);
+
+}
@@ -0,0 +1,114 @@
+package mandelbrot.render;
+
+
+/**
+ * Identifies one tile of the global grid, see {@link Viewport#alignedToGrid()}. A tile holds the values of
+ * {@link TileCache#TILE_SIZE} x {@link TileCache#TILE_SIZE} pixels, and is only the same tile for the same zoom level,
+ * iteration limit and formula
+ */
+public final class TileKey
+{
+
+	private final int realLevel;
+	private final int imaginaryLevel;
+	private final long tileX;
+	private final long tileY;
+	private final int iterations;
+	private final String formula;
+
+
+	/**
+	 * @param realLevel
+	 *            The zoom level of the real axis
+	 * @param imaginaryLevel
+	 *            The zoom level of the imaginary axis
+	 * @param tileX
+	 *            The column of the tile on the grid
+	 * @param tileY
+	 *            The row of the tile on the grid
+	 * @param iterations
+	 *            The iteration limit the tile was calculated with
+	 * @param formula
+	 *            Names the fractal and any option which changes the values calculated for it
+	 */
+	public TileKey(int realLevel, int imaginaryLevel, long tileX, long tileY, int iterations, String formula)
+	{
+		this.realLevel = realLevel;
+		this.imaginaryLevel = imaginaryLevel;
+		this.tileX = tileX;
+		this.tileY = tileY;
+		this.iterations = iterations;
+		this.formula = formula;
+	}
+
+
+	public int getRealLevel()
+	{
+		return realLevel;
+	}
+
+
+	public int getImaginaryLevel()
+	{
+		return imaginaryLevel;
+	}
+
+
+	public long getTileX()
+	{
+		return tileX;
+	}
+
+
+	public long getTileY()
+	{
+		return tileY;
+	}
+
+
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+
+	public String getFormula()
+	{
+		return formula;
+	}
+
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof TileKey))
+			return false;
+
+		TileKey other = (TileKey) obj;
+		return realLevel == other.realLevel && imaginaryLevel == other.imaginaryLevel && tileX == other.tileX && tileY == other.tileY
+				&& iterations == other.iterations && formula.equals(other.formula);
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		int hash = realLevel;
+		hash = 31 * hash + imaginaryLevel;
+		hash = 31 * hash + Long.valueOf(tileX).hashCode();
+		hash = 31 * hash + Long.valueOf(tileY).hashCode();
+		hash = 31 * hash + iterations;
+		hash = 31 * hash + formula.hashCode();
+		return hash;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return formula + " " + iterations + " iterations, level " + realLevel + "/" + imaginaryLevel + ", tile " + tileX + "," + tileY;
+	}
+
+}
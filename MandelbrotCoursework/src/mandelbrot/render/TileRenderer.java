@@ -0,0 +1,173 @@
+package mandelbrot.render;
+
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders a framebuffer in parallel by recursively splitting it into square tiles on a {@link ForkJoinPool}. The image is
+ * halved until the pieces are a single tile, so idle workers steal the unsplit halves of busy ones, which keeps every
+ * core busy even when the tiles on the edge of the set cost far more than the rest
+ */
+public class TileRenderer
+{
+
+	public static final int DEFAULT_TILE_SIZE = 32;
+
+	private final ForkJoinPool pool;
+	private final int tileSize;
+
+
+	/**
+	 * Creates a renderer using every available core and the default tile size
+	 */
+	public TileRenderer()
+	{
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_TILE_SIZE);
+	}
+
+
+	/**
+	 * @param parallelism
+	 *            The number of worker threads to render with
+	 * @param tileSize
+	 *            The width and height in pixels of the smallest unit of work
+	 */
+	public TileRenderer(int parallelism, int tileSize)
+	{
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1, was " + parallelism);
+		if (tileSize < 1)
+			throw new IllegalArgumentException("Tile size must be at least 1, was " + tileSize);
+
+		this.pool = new ForkJoinPool(parallelism);
+		this.tileSize = tileSize;
+	}
+
+
+	/**
+	 * Runs the kernel over every tile of a framebuffer. The job is checked before each tile is started, and once it
+	 * has been cancelled no more tiles are rendered
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param kernel
+	 *            Calculates the pixels of each tile
+	 * @param job
+	 *            The job the image is being rendered for
+	 * @return <b>finished</b> True if every tile was rendered, false if the job was cancelled first
+	 */
+	public boolean render(Framebuffer framebuffer, TileKernel kernel, RenderJob<?> job)
+	{
+		return render(framebuffer, kernel, job, 0, 0, framebuffer.getWidth(), framebuffer.getHeight());
+	}
+
+
+	/**
+	 * Runs the kernel over the tiles of one rectangle of a framebuffer, leaving the rest of the image as it was
+	 * 
+	 * @param framebuffer
+	 *            The image to render into
+	 * @param kernel
+	 *            Calculates the pixels of each tile
+	 * @param job
+	 *            The job the image is being rendered for
+	 * @param xStart
+	 *            The first column, inclusive
+	 * @param yStart
+	 *            The first row, inclusive
+	 * @param xEnd
+	 *            The last column, exclusive
+	 * @param yEnd
+	 *            The last row, exclusive
+	 * @return <b>finished</b> True if every tile was rendered, false if the job was cancelled first
+	 */
+	public boolean render(Framebuffer framebuffer, TileKernel kernel, RenderJob<?> job, int xStart, int yStart, int xEnd, int yEnd)
+	{
+		if (xEnd > xStart && yEnd > yStart)
+			pool.invoke(new TileTask(framebuffer, kernel, job, xStart, yStart, xEnd, yEnd));
+		return !job.isCancelled();
+	}
+
+
+	/**
+	 * @return <b>pool</b> The pool tiles are rendered on, shared with the other renderers so they do not compete for
+	 *         cores
+	 */
+	ForkJoinPool getPool()
+	{
+		return pool;
+	}
+
+
+	public int getTileSize()
+	{
+		return tileSize;
+	}
+
+
+	public int getParallelism()
+	{
+		return pool.getParallelism();
+	}
+
+
+	/**
+	 * A rectangle of the image which renders itself if it is a single tile, otherwise splits along its longest side
+	 * on a tile boundary and forks both halves
+	 */
+	private class TileTask extends RecursiveAction
+	{
+
+		private final Framebuffer framebuffer;
+		private final TileKernel kernel;
+		private final RenderJob<?> job;
+		private final int xStart, yStart, xEnd, yEnd;
+
+		private static final long serialVersionUID = 6383472912395117263L;
+
+
+		TileTask(Framebuffer framebuffer, TileKernel kernel, RenderJob<?> job, int xStart, int yStart, int xEnd, int yEnd)
+		{
+			this.framebuffer = framebuffer;
+			this.kernel = kernel;
+			this.job = job;
+			this.xStart = xStart;
+			this.yStart = yStart;
+			this.xEnd = xEnd;
+			this.yEnd = yEnd;
+		}
+
+
+		@Override
+		protected void compute()
+		{
+			if (job.isCancelled())
+				return;
+
+			int xTiles = (xEnd - xStart + tileSize - 1) / tileSize;
+			int yTiles = (yEnd - yStart + tileSize - 1) / tileSize;
+
+			if (xTiles <= 1 && yTiles <= 1)
+			{
+				if (xEnd > xStart && yEnd > yStart)
+				{
+					kernel.renderTile(framebuffer, xStart, yStart, xEnd, yEnd);
+					job.addPixelsRendered((long) (xEnd - xStart) * (yEnd - yStart));
+				}
+			}
+			else if (xTiles >= yTiles)
+			{
+				int split = xStart + (xTiles / 2) * tileSize;
+				invokeAll(new TileTask(framebuffer, kernel, job, xStart, yStart, split, yEnd), new TileTask(framebuffer, kernel, job, split, yStart, xEnd, yEnd));
+			}
+			else
+			{
+				int split = yStart + (yTiles / 2) * tileSize;
+				invokeAll(new TileTask(framebuffer, kernel, job, xStart, yStart, xEnd, split), new TileTask(framebuffer, kernel, job, xStart, split, xEnd, yEnd));
+			}
+		}
+
+	}
+
+}
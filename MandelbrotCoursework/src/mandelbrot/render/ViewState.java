@@ -0,0 +1,119 @@
+package mandelbrot.render;
+
+
+/**
+ * An immutable snapshot of everything a render depends on. Render threads work from a snapshot rather than reading
+ * the live values from the GUI, so a frame is always drawn for one consistent view
+ */
+public final class ViewState
+{
+
+	private final Viewport viewport;
+	private final int iterations;
+	private final double juliaReal;
+	private final double juliaImaginary;
+
+
+	/**
+	 * Creates a view of the Mandelbrot set
+	 * 
+	 * @param viewport
+	 *            The part of the complex plane to draw, and the size of the image
+	 * @param iterations
+	 *            The iteration limit
+	 */
+	public ViewState(Viewport viewport, int iterations)
+	{
+		this(viewport, iterations, 0, 0);
+	}
+
+
+	/**
+	 * Creates a view of the Julia set for the constant c = juliaReal + juliaImaginary i
+	 * 
+	 * @param viewport
+	 *            The part of the complex plane to draw, and the size of the image
+	 * @param iterations
+	 *            The iteration limit
+	 * @param juliaReal
+	 *            The real part of the Julia constant
+	 * @param juliaImaginary
+	 *            The imaginary part of the Julia constant
+	 */
+	public ViewState(Viewport viewport, int iterations, double juliaReal, double juliaImaginary)
+	{
+		this.viewport = viewport;
+		this.iterations = iterations;
+		this.juliaReal = juliaReal;
+		this.juliaImaginary = juliaImaginary;
+	}
+
+
+	public Viewport getViewport()
+	{
+		return viewport;
+	}
+
+
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+
+	public int getWidth()
+	{
+		return viewport.getWidth();
+	}
+
+
+	public int getHeight()
+	{
+		return viewport.getHeight();
+	}
+
+
+	public double getJuliaReal()
+	{
+		return juliaReal;
+	}
+
+
+	public double getJuliaImaginary()
+	{
+		return juliaImaginary;
+	}
+
+
+
+	/**
+	 * Two views are equal when they would render the same image, which is how the GUI tells whether the bounds,
+	 * iterations or size have changed since the last render
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ViewState))
+			return false;
+
+		ViewState other = (ViewState) obj;
+		return iterations == other.iterations && Double.compare(juliaReal, other.juliaReal) == 0
+				&& Double.compare(juliaImaginary, other.juliaImaginary) == 0 && viewport.equals(other.viewport);
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		int hash = viewport.hashCode();
+		hash = 31 * hash + iterations;
+		hash = 31 * hash + Double.valueOf(juliaReal).hashCode();
+		hash = 31 * hash + Double.valueOf(juliaImaginary).hashCode();
+		return hash;
+	}
+
+}
@@ -0,0 +1,503 @@
+package mandelbrot.render;
+
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import mandelbrot.maths.Precision;
+import mandelbrot.maths.ReferenceOrbit;
+
+/**
+ * An immutable description of which part of the complex plane an image shows: its bounds, its size in pixels, the
+ * spacing between pixels and the precision that spacing needs. The GUI publishes a new viewport whenever the view
+ * changes instead of changing the bounds in place, so a render always works from one consistent view.
+ * <p>
+ * Pixel x lies at realMin + x * realSpacing on the real axis, worked out with a single multiply and add rather than
+ * by adding up steps, which would drift across a wide image. The centre is also kept exactly, for views too deep for
+ * their bounds to be told apart as doubles
+ * <p>
+ * A viewport can be snapped to a grid covering the whole plane, see {@link #alignedToGrid()}. Its pixels are then
+ * counted from the origin of the plane, so two views which overlap calculate exactly the same points where they
+ * overlap, and can share tiles of the image
+ */
+public final class Viewport
+{
+
+	/**
+	 * The number of zoom levels on the grid between one pixel spacing and double it
+	 */
+	public static final int LEVELS_PER_OCTAVE = 16;
+
+	private final BigDecimal centreReal;
+	private final BigDecimal centreImaginary;
+	private final double realMin;
+	private final double realMax;
+	private final double imaginaryMin;
+	private final double imaginaryMax;
+	private final double realSpan;
+	private final double imaginarySpan;
+	private final int width;
+	private final int height;
+	private final double realSpacing;
+	private final double imaginarySpacing;
+	private final Precision precision;
+	private final boolean aligned;
+	private final int realLevel;
+	private final int imaginaryLevel;
+	private final double realIndex;
+	private final double imaginaryIndex;
+
+
+	private Viewport(BigDecimal centreReal, BigDecimal centreImaginary, double realMin, double realMax, double imaginaryMin,
+			double imaginaryMax, double realSpan, double imaginarySpan, int width, int height)
+	{
+		this(centreReal, centreImaginary, realMin, realMax, imaginaryMin, imaginaryMax, realSpan, imaginarySpan, width, height, false,
+				0, 0, 0, 0);
+	}
+
+
+	private Viewport(BigDecimal centreReal, BigDecimal centreImaginary, double realMin, double realMax, double imaginaryMin,
+			double imaginaryMax, double realSpan, double imaginarySpan, int width, int height, boolean aligned, int realLevel,
+			int imaginaryLevel, double realIndex, double imaginaryIndex)
+	{
+		this.centreReal = centreReal;
+		this.centreImaginary = centreImaginary;
+		this.realMin = realMin;
+		this.realMax = realMax;
+		this.imaginaryMin = imaginaryMin;
+		this.imaginaryMax = imaginaryMax;
+		this.realSpan = realSpan;
+		this.imaginarySpan = imaginarySpan;
+		this.width = width;
+		this.height = height;
+		this.realSpacing = realSpan / width;
+		this.imaginarySpacing = imaginarySpan / height;
+		this.precision = Precision.select(Math.min(Math.abs(realSpacing), Math.abs(imaginarySpacing)), centreReal.doubleValue(),
+				centreImaginary.doubleValue());
+		this.aligned = aligned;
+		this.realLevel = realLevel;
+		this.imaginaryLevel = imaginaryLevel;
+		this.realIndex = realIndex;
+		this.imaginaryIndex = imaginaryIndex;
+	}
+
+
+	/**
+	 * @param realMin
+	 *            The lower bound of the real axis
+	 * @param realMax
+	 *            The upper bound of the real axis
+	 * @param imaginaryMin
+	 *            The lower bound of the imaginary axis
+	 * @param imaginaryMax
+	 *            The upper bound of the imaginary axis
+	 * @param width
+	 *            The width of the image in pixels
+	 * @param height
+	 *            The height of the image in pixels
+	 * @return <b>viewport</b> The viewport showing exactly those bounds
+	 */
+	public static Viewport fromBounds(double realMin, double realMax, double imaginaryMin, double imaginaryMax, int width, int height)
+	{
+		return new Viewport(midpoint(realMin, realMax), midpoint(imaginaryMin, imaginaryMax), realMin, realMax, imaginaryMin,
+				imaginaryMax, realMax - realMin, imaginaryMax - imaginaryMin, width, height);
+	}
+
+
+	/**
+	 * @param realMin
+	 *            The lower bound of the real axis
+	 * @param imaginaryMin
+	 *            The lower bound of the imaginary axis
+	 * @param realSpan
+	 *            The width of the view on the real axis
+	 * @param imaginarySpan
+	 *            The height of the view on the imaginary axis
+	 * @param width
+	 *            The width of the image in pixels
+	 * @param height
+	 *            The height of the image in pixels
+	 * @return <b>viewport</b> The viewport starting at the lower bounds with exactly the given spans
+	 */
+	public static Viewport fromOrigin(double realMin, double imaginaryMin, double realSpan, double imaginarySpan, int width, int height)
+	{
+		BigDecimal two = BigDecimal.valueOf(2);
+		return new Viewport(new BigDecimal(realMin).add(new BigDecimal(realSpan).divide(two)), new BigDecimal(imaginaryMin)
+				.add(new BigDecimal(imaginarySpan).divide(two)), realMin, realMin + realSpan, imaginaryMin, imaginaryMin + imaginarySpan,
+				realSpan, imaginarySpan, width, height);
+	}
+
+
+	/**
+	 * @param centreReal
+	 *            The real part of the centre, which is kept to as many digits as the pixel spacing needs
+	 * @param centreImaginary
+	 *            The imaginary part of the centre
+	 * @param realSpan
+	 *            The width of the view on the real axis
+	 * @param imaginarySpan
+	 *            The height of the view on the imaginary axis
+	 * @param width
+	 *            The width of the image in pixels
+	 * @param height
+	 *            The height of the image in pixels
+	 * @return <b>viewport</b> The viewport around the centre, with its bounds set to the nearest doubles
+	 */
+	public static Viewport fromCentre(BigDecimal centreReal, BigDecimal centreImaginary, double realSpan, double imaginarySpan,
+			int width, int height)
+	{
+		// Keeps enough digits to place every pixel, without the centre growing longer with every zoom
+		double pixelSpacing = Math.min(Math.abs(realSpan), Math.abs(imaginarySpan)) / Math.max(1, Math.max(width, height));
+		MathContext mathContext = new MathContext(ReferenceOrbit.precisionFor(pixelSpacing));
+		BigDecimal real = centreReal.round(mathContext);
+		BigDecimal imaginary = centreImaginary.round(mathContext);
+
+		double realDouble = real.doubleValue();
+		double imaginaryDouble = imaginary.doubleValue();
+		return new Viewport(real, imaginary, realDouble - realSpan / 2, realDouble + realSpan / 2, imaginaryDouble - imaginarySpan / 2,
+				imaginaryDouble + imaginarySpan / 2, realSpan, imaginarySpan, width, height);
+	}
+
+
+	/**
+	 * Snaps the view to the global grid. The pixel spacing on each axis is rounded to the nearest zoom level, a power
+	 * of two to the level / {@link #LEVELS_PER_OCTAVE}, and the first pixel is moved to the nearest multiple of the
+	 * spacing, keeping the centre within half a pixel of where it was. Only views which double precision can draw
+	 * are snapped, deeper views are drawn relative to their exact centre instead
+	 * 
+	 * @return <b>viewport</b> The snapped viewport, or this viewport if it is already on the grid or cannot be
+	 *         snapped
+	 */
+	public Viewport alignedToGrid()
+	{
+		if (aligned || precision != Precision.DOUBLE || width <= 0 || height <= 0 || !(realSpacing > 0) || !(imaginarySpacing > 0)
+				|| Double.isInfinite(realSpacing) || Double.isInfinite(imaginarySpacing))
+			return this;
+
+		int newRealLevel = levelOf(realSpacing);
+		int newImaginaryLevel = levelOf(imaginarySpacing);
+		double newRealSpacing = spacingOf(newRealLevel);
+		double newImaginarySpacing = spacingOf(newImaginaryLevel);
+		double newRealIndex = Math.rint(centreReal.doubleValue() / newRealSpacing - width / 2.0);
+		double newImaginaryIndex = Math.rint(centreImaginary.doubleValue() / newImaginarySpacing - height / 2.0);
+
+		// Past this every whole number can no longer be held exactly in a double
+		if (Math.abs(newRealIndex) + width > 1L << 52 || Math.abs(newImaginaryIndex) + height > 1L << 52)
+			return this;
+
+		double newRealMin = newRealIndex * newRealSpacing;
+		double newRealMax = (newRealIndex + width) * newRealSpacing;
+		double newImaginaryMin = newImaginaryIndex * newImaginarySpacing;
+		double newImaginaryMax = (newImaginaryIndex + height) * newImaginarySpacing;
+		return new Viewport(midpoint(newRealMin, newRealMax), midpoint(newImaginaryMin, newImaginaryMax), newRealMin, newRealMax,
+				newImaginaryMin, newImaginaryMax, newRealSpacing * width, newImaginarySpacing * height, width, height, true, newRealLevel,
+				newImaginaryLevel, newRealIndex, newImaginaryIndex);
+	}
+
+
+	/**
+	 * @param spacing
+	 *            The distance between neighbouring pixels
+	 * @return <b>level</b> The zoom level whose spacing is closest to it
+	 */
+	public static int levelOf(double spacing)
+	{
+		return (int) Math.round(-Math.log(spacing) / Math.log(2) * LEVELS_PER_OCTAVE);
+	}
+
+
+	/**
+	 * @param level
+	 *            A zoom level
+	 * @return <b>spacing</b> The distance between neighbouring pixels at that level
+	 */
+	public static double spacingOf(int level)
+	{
+		return Math.pow(2, -level / (double) LEVELS_PER_OCTAVE);
+	}
+
+
+	private static BigDecimal midpoint(double lower, double upper)
+	{
+		return new BigDecimal(lower).add(new BigDecimal(upper)).divide(BigDecimal.valueOf(2));
+	}
+
+
+	/**
+	 * @param newWidth
+	 *            The new width of the image in pixels
+	 * @param newHeight
+	 *            The new height of the image in pixels
+	 * @return <b>viewport</b> The same bounds drawn at a new size, or this viewport if the size has not changed. The
+	 *         new size changes the spacing, so the result is not on the grid until {@link #alignedToGrid()} is called
+	 */
+	public Viewport withSize(int newWidth, int newHeight)
+	{
+		if (newWidth == width && newHeight == height)
+			return this;
+
+		return new Viewport(centreReal, centreImaginary, realMin, realMax, imaginaryMin, imaginaryMax, realSpan, imaginarySpan,
+				newWidth, newHeight);
+	}
+
+
+	/**
+	 * Zooms in to a rectangle of pixels, working from the exact centre rather than the bounds
+	 * 
+	 * @param xLower
+	 *            The left edge of the rectangle
+	 * @param yLower
+	 *            The top edge of the rectangle
+	 * @param xUpper
+	 *            The right edge of the rectangle
+	 * @param yUpper
+	 *            The bottom edge of the rectangle
+	 * @return <b>viewport</b> The viewport showing the rectangle, at the same size in pixels as this one
+	 */
+	public Viewport zoomTo(int xLower, int yLower, int xUpper, int yUpper)
+	{
+		double realOffset = ((xLower + xUpper) / 2.0 - width / 2.0) * realSpacing;
+		double imaginaryOffset = ((yLower + yUpper) / 2.0 - height / 2.0) * imaginarySpacing;
+
+		return fromCentre(centreReal.add(new BigDecimal(realOffset)), centreImaginary.add(new BigDecimal(imaginaryOffset)),
+				(xUpper - xLower) * realSpacing, (yUpper - yLower) * imaginarySpacing, width, height);
+	}
+
+
+	/**
+	 * Moves the view by a whole number of pixels without changing its scale. A view on the grid stays on the grid, so
+	 * the pixels the two views share are exactly the same points
+	 * 
+	 * @param dx
+	 *            The number of columns to move right by, so column x of the new view shows column x + dx of this one
+	 * @param dy
+	 *            The number of rows to move down by
+	 * @return <b>viewport</b> The moved viewport, the same size in pixels as this one
+	 */
+	public Viewport panBy(int dx, int dy)
+	{
+		if (aligned && Math.abs(realIndex + dx) + width <= 1L << 52 && Math.abs(imaginaryIndex + dy) + height <= 1L << 52)
+		{
+			double newRealIndex = realIndex + dx;
+			double newImaginaryIndex = imaginaryIndex + dy;
+			double newRealMin = newRealIndex * realSpacing;
+			double newRealMax = (newRealIndex + width) * realSpacing;
+			double newImaginaryMin = newImaginaryIndex * imaginarySpacing;
+			double newImaginaryMax = (newImaginaryIndex + height) * imaginarySpacing;
+			return new Viewport(midpoint(newRealMin, newRealMax), midpoint(newImaginaryMin, newImaginaryMax), newRealMin, newRealMax,
+					newImaginaryMin, newImaginaryMax, realSpan, imaginarySpan, width, height, true, realLevel, imaginaryLevel, newRealIndex,
+					newImaginaryIndex);
+		}
+
+		return fromCentre(centreReal.add(new BigDecimal(dx * realSpacing)), centreImaginary.add(new BigDecimal(dy * imaginarySpacing)),
+				realSpan, imaginarySpan, width, height);
+	}
+
+
+	/**
+	 * @param other
+	 *            Another viewport
+	 * @return <b>panned</b> True if both views are on the grid at the same levels and size, so this one is the other
+	 *         moved by the whole number of pixels given by the difference of their indices
+	 */
+	public boolean isPannedFrom(Viewport other)
+	{
+		return other != null && aligned && other.aligned && realLevel == other.realLevel && imaginaryLevel == other.imaginaryLevel
+				&& width == other.width && height == other.height;
+	}
+
+
+	/**
+	 * @param x
+	 *            A column of the image, which may lie outside it
+	 * @return <b>real</b> The real part of the points in the column
+	 */
+	public double realAt(double x)
+	{
+		if (aligned)
+			return (realIndex + x) * realSpacing;
+		return x * realSpacing + realMin;
+	}
+
+
+	/**
+	 * @param y
+	 *            A row of the image, which may lie outside it
+	 * @return <b>imaginary</b> The imaginary part of the points in the row
+	 */
+	public double imaginaryAt(double y)
+	{
+		if (aligned)
+			return (imaginaryIndex + y) * imaginarySpacing;
+		return y * imaginarySpacing + imaginaryMin;
+	}
+
+
+	public BigDecimal getCentreReal()
+	{
+		return centreReal;
+	}
+
+
+	public BigDecimal getCentreImaginary()
+	{
+		return centreImaginary;
+	}
+
+
+	public double getRealMin()
+	{
+		return realMin;
+	}
+
+
+	public double getRealMax()
+	{
+		return realMax;
+	}
+
+
+	public double getImaginaryMin()
+	{
+		return imaginaryMin;
+	}
+
+
+	public double getImaginaryMax()
+	{
+		return imaginaryMax;
+	}
+
+
+	public double getRealSpan()
+	{
+		return realSpan;
+	}
+
+
+	public double getImaginarySpan()
+	{
+		return imaginarySpan;
+	}
+
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+
+	public double getRealSpacing()
+	{
+		return realSpacing;
+	}
+
+
+	public double getImaginarySpacing()
+	{
+		return imaginarySpacing;
+	}
+
+
+	/**
+	 * @return <b>precision</b> The cheapest precision that can tell this viewport's pixels apart
+	 */
+	public Precision getPrecision()
+	{
+		return precision;
+	}
+
+
+	/**
+	 * @return <b>aligned</b> Whether the view lies on the global grid
+	 */
+	public boolean isAligned()
+	{
+		return aligned;
+	}
+
+
+	/**
+	 * @return <b>realLevel</b> The zoom level of the real axis, if the view lies on the global grid
+	 */
+	public int getRealLevel()
+	{
+		return realLevel;
+	}
+
+
+	/**
+	 * @return <b>imaginaryLevel</b> The zoom level of the imaginary axis, if the view lies on the global grid
+	 */
+	public int getImaginaryLevel()
+	{
+		return imaginaryLevel;
+	}
+
+
+	/**
+	 * @return <b>realIndex</b> The column of the global grid the first column of the image lies on, or 0 if the view
+	 *         is not on the grid. Pixel x lies at (realIndex + x) * realSpacing + realOffset
+	 */
+	public double getRealIndex()
+	{
+		return realIndex;
+	}
+
+
+	/**
+	 * @return <b>imaginaryIndex</b> The row of the global grid the first row of the image lies on, or 0 if the view is
+	 *         not on the grid
+	 */
+	public double getImaginaryIndex()
+	{
+		return imaginaryIndex;
+	}
+
+
+	/**
+	 * @return <b>realOffset</b> What is added to (realIndex + x) * realSpacing to find the real part of column x, 0 for
+	 *         a view on the grid
+	 */
+	public double getRealOffset()
+	{
+		return aligned ? 0 : realMin;
+	}
+
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Viewport))
+			return false;
+
+		Viewport other = (Viewport) obj;
+		return width == other.width && height == other.height && Double.compare(realMin, other.realMin) == 0
+				&& Double.compare(realMax, other.realMax) == 0 && Double.compare(imaginaryMin, other.imaginaryMin) == 0
+				&& Double.compare(imaginaryMax, other.imaginaryMax) == 0 && Double.compare(realSpan, other.realSpan) == 0
+				&& Double.compare(imaginarySpan, other.imaginarySpan) == 0 && centreReal.compareTo(other.centreReal) == 0
+				&& centreImaginary.compareTo(other.centreImaginary) == 0 && aligned == other.aligned;
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		int hash = Double.valueOf(realMin).hashCode();
+		hash = 31 * hash + Double.valueOf(imaginaryMin).hashCode();
+		hash = 31 * hash + Double.valueOf(realSpan).hashCode();
+		hash = 31 * hash + Double.valueOf(imaginarySpan).hashCode();
+		hash = 31 * hash + width;
+		hash = 31 * hash + height;
+		return hash;
+	}
+
+}
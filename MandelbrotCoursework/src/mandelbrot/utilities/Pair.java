@@ -25,4 +25,26 @@ public class Pair<L, R>
 		return right;
 	}
 
+
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Pair))
+			return false;
+
+		Pair<?, ?> other = (Pair<?, ?>) obj;
+		return (left == null ? other.left == null : left.equals(other.left))
+				&& (right == null ? other.right == null : right.equals(other.right));
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * (left == null ? 0 : left.hashCode()) + (right == null ? 0 : right.hashCode());
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+package mandelbrot.maths;
+
+
+import java.util.Arrays;
+
+/**
+ * Checks that the lane kernel gives exactly the same result for every point as the scalar kernel, and times the two
+ * over the same rows on one thread, so the speed up of running four orbits at once can be measured on any machine.
+ * Run it with
+ *
+ * <pre>
+ * java -cp bin mandelbrot.maths.LaneEscapeTimeTest
+ * </pre>
+ *
+ * and it exits with a non-zero status if any point differs. The times are only reported, since they depend on the
+ * machine
+ */
+public class LaneEscapeTimeTest
+{
+
+	private static final int WIDTH = 641;
+	private static final int HEIGHT = 479;
+
+	/**
+	 * Each kernel is run this many times over every view before any are timed, so the compiler has seen all of them
+	 * and the order of the views does not change how the kernels are compiled
+	 */
+	private static final int WARM_UP = 5;
+
+	/**
+	 * Each kernel is then timed this many times over every view, and the best time is kept
+	 */
+	private static final int REPEATS = 5;
+
+	/**
+	 * Each view as {realMin, realMax, imaginaryMin, imaginaryMax, iterations}: the default view, seahorse valley and a
+	 * deep zoom into it
+	 */
+	private static final double[][] VIEWS = { { -2, 2, -1.6, 1.6, 300 }, { -0.7454, -0.7446, 0.1126, 0.1132, 1000 },
+			{ -0.743643889037151, -0.743643885037151, 0.131825902705330, 0.131825905705330, 5000 } };
+
+	private static int failures;
+
+	/**
+	 * Collects the results of the timed runs, so the work cannot be optimised away
+	 */
+	private static long checksum;
+
+
+	public static void main(String[] args)
+	{
+		for (int i = 0; i < WARM_UP; i++)
+		{
+			for (double[] view : VIEWS)
+			{
+				checksum += runScalar(view) + runLanes(view);
+			}
+		}
+
+		long[] scalarTimes = new long[VIEWS.length];
+		long[] laneTimes = new long[VIEWS.length];
+		Arrays.fill(scalarTimes, Long.MAX_VALUE);
+		Arrays.fill(laneTimes, Long.MAX_VALUE);
+		for (int i = 0; i < REPEATS; i++)
+		{
+			for (int v = 0; v < VIEWS.length; v++)
+			{
+				long start = System.nanoTime();
+				checksum += runScalar(VIEWS[v]);
+				long middle = System.nanoTime();
+				checksum += runLanes(VIEWS[v]);
+				long end = System.nanoTime();
+				scalarTimes[v] = Math.min(scalarTimes[v], middle - start);
+				laneTimes[v] = Math.min(laneTimes[v], end - middle);
+			}
+		}
+
+		for (int v = 0; v < VIEWS.length; v++)
+		{
+			double[] view = VIEWS[v];
+			int different = compare(view);
+			boolean passed = different == 0;
+			System.out.println((passed ? "PASS " : "FAIL ") + view[0] + ".." + view[1] + " x " + view[2] + ".." + view[3] + " at "
+					+ (int) view[4] + " iterations: " + different + " points differ, scalar " + scalarTimes[v] / 1000000 + "ms, lanes "
+					+ laneTimes[v] / 1000000 + "ms, " + String.format("%.2f", (double) scalarTimes[v] / laneTimes[v]) + " times as fast");
+			if (!passed)
+				failures++;
+		}
+
+		if (failures > 0)
+		{
+			System.out.println(failures + " views differ");
+			System.exit(1);
+		}
+		System.out.println("All views match (checksum " + checksum + ")");
+	}
+
+
+	/**
+	 * @return <b>different</b> The number of points where the two kernels disagree on any part of the result
+	 */
+	private static int compare(double[] view)
+	{
+		LaneEscapeTime laneEscapeTime = new LaneEscapeTime();
+		EscapeResult scalar = new EscapeResult();
+		EscapeResult lane = new EscapeResult();
+		int iterations = (int) view[4];
+		double realScale = (view[1] - view[0]) / WIDTH;
+		double imaginaryScale = (view[3] - view[2]) / HEIGHT;
+		int different = 0;
+
+		for (int y = 0; y < HEIGHT; y++)
+		{
+			double imaginary = y * imaginaryScale + view[2];
+			laneEscapeTime.mandelbrotRow(view[0], realScale, 0, 1, imaginary, WIDTH, iterations, true);
+			for (int x = 0; x < WIDTH; x++)
+			{
+				EscapeTime.mandelbrot(x * realScale + view[0], imaginary, iterations, true, scalar);
+				laneEscapeTime.getResult(x, lane);
+				if (!sameResult(scalar, lane))
+					different++;
+			}
+		}
+		return different;
+	}
+
+
+	private static boolean sameResult(EscapeResult first, EscapeResult second)
+	{
+		return first.isEscaped() == second.isEscaped() && first.getIterations() == second.getIterations() && first
+				.getIterationsRun() == second.getIterationsRun() && first.getInteriorCheck() == second.getInteriorCheck()
+				&& sameBits(first.getzReal(), second.getzReal()) && sameBits(first.getzImaginary(), second.getzImaginary())
+				&& sameBits(first.getModulusSquared(), second.getModulusSquared());
+	}
+
+
+	private static boolean sameBits(double first, double second)
+	{
+		return Double.doubleToLongBits(first) == Double.doubleToLongBits(second);
+	}
+
+
+	/**
+	 * @return <b>total</b> The sum of the iteration counts
+	 */
+	private static long runScalar(double[] view)
+	{
+		EscapeResult result = new EscapeResult();
+		int iterations = (int) view[4];
+		double realScale = (view[1] - view[0]) / WIDTH;
+		double imaginaryScale = (view[3] - view[2]) / HEIGHT;
+		long total = 0;
+
+		for (int y = 0; y < HEIGHT; y++)
+		{
+			double imaginary = y * imaginaryScale + view[2];
+			for (int x = 0; x < WIDTH; x++)
+			{
+				EscapeTime.mandelbrot(x * realScale + view[0], imaginary, iterations, true, result);
+				total += result.getIterations();
+			}
+		}
+		return total;
+	}
+
+
+	/**
+	 * @return <b>total</b> The sum of the iteration counts
+	 */
+	private static long runLanes(double[] view)
+	{
+		LaneEscapeTime laneEscapeTime = new LaneEscapeTime();
+		EscapeResult result = new EscapeResult();
+		int iterations = (int) view[4];
+		double realScale = (view[1] - view[0]) / WIDTH;
+		double imaginaryScale = (view[3] - view[2]) / HEIGHT;
+		long total = 0;
+
+		for (int y = 0; y < HEIGHT; y++)
+		{
+			laneEscapeTime.mandelbrotRow(view[0], realScale, 0, 1, y * imaginaryScale + view[2], WIDTH, iterations, true);
+			for (int x = 0; x < WIDTH; x++)
+			{
+				laneEscapeTime.getResult(x, result);
+				total += result.getIterations();
+			}
+		}
+		return total;
+	}
+
+}
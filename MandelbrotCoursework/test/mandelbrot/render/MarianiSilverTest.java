@@ -0,0 +1,95 @@
+package mandelbrot.render;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.EscapeTime;
+import mandelbrot.maths.Maths;
+
+/**
+ * Checks that the Mariani-Silver renderer gives the same image as calculating every pixel, over views chosen to have
+ * thin filaments of the outside running through large areas of the inside, where a fill is most likely to go wrong,
+ * and that it calculates fewer pixels than the image has. Every view has at least a small part of the inside to fill.
+ * Run it with
+ *
+ * <pre>
+ * java -cp bin mandelbrot.render.MarianiSilverTest
+ * </pre>
+ *
+ * and it exits with a non-zero status if any pixel of any view differs, or any view costs as much as calculating
+ * every pixel, or the renderer reports a different number of calculations than it made
+ */
+public class MarianiSilverTest
+{
+
+	private static final int WIDTH = 900;
+	private static final int HEIGHT = 600;
+
+	/**
+	 * Each view as {realMin, realMax, imaginaryMin, imaginaryMax, iterations}
+	 */
+	private static final double[][] VIEWS = { { -2, 1, -1.2, 1.2, 300 }, { -0.8, -0.7, 0.05, 0.15, 500 },
+			{ -0.7465, -0.7435, 0.11, 0.1125, 1000 }, { -1.79, -1.74, -0.02, 0.02, 800 }, { 0.25, 0.27, -0.01, 0.01, 2000 },
+			{ -0.1, 0.1, 0.9, 1.1, 600 }, { -1.26, -1.24, 0.37, 0.39, 1500 } };
+
+	private static int failures;
+
+
+	public static void main(String[] args)
+	{
+		TileRenderer tileRenderer = new TileRenderer();
+		MarianiSilverRenderer marianiSilverRenderer = new MarianiSilverRenderer(tileRenderer);
+
+		for (double[] view : VIEWS)
+		{
+			final Viewport viewport = Viewport.fromBounds(view[0], view[1], view[2], view[3], WIDTH, HEIGHT).alignedToGrid();
+			final int iterations = (int) view[4];
+			final AtomicLong calls = new AtomicLong();
+			PixelKernel kernel = new PixelKernel()
+			{
+				@Override
+				public float valueAt(int x, int y, EscapeResult result)
+				{
+					calls.incrementAndGet();
+					EscapeTime.mandelbrot(viewport.realAt(x), viewport.imaginaryAt(y), iterations, true, result);
+					if (!result.isEscaped())
+						return Palette.INTERIOR;
+					return (float) (result.getIterations() - Maths.fastLog2Log(result.getModulusSquared())) / iterations;
+				}
+			};
+
+			Framebuffer full = new Framebuffer(WIDTH, HEIGHT);
+			Framebuffer filled = new Framebuffer(WIDTH, HEIGHT);
+			tileRenderer.render(full, new SampledTileKernel(kernel, 1, false), new RenderJob<Object>(new RenderScheduler<Object>(), null, 0));
+			calls.set(0);
+			RenderJob<Object> job = new RenderJob<Object>(new RenderScheduler<Object>(), null, 0);
+			marianiSilverRenderer.render(filled, kernel, job);
+
+			int different = 0;
+			float[] expected = full.getValues();
+			float[] actual = filled.getValues();
+			for (int i = 0; i < WIDTH * HEIGHT; i++)
+			{
+				if (Float.floatToIntBits(expected[i]) != Float.floatToIntBits(actual[i]))
+					different++;
+			}
+
+			// The job's count of rendered pixels is what the GUI reports, so it has to agree with the real work done
+			boolean passed = different == 0 && calls.get() < (long) WIDTH * HEIGHT && calls.get() == job.getPixelsRendered();
+			System.out.println((passed ? "PASS " : "FAIL ") + view[0] + ".." + view[1] + " x " + view[2] + ".." + view[3] + " at "
+					+ iterations + " iterations: " + different + " pixels differ, " + calls.get() + " calculations for " + WIDTH * HEIGHT
+					+ " pixels, " + job.getPixelsRendered() + " reported");
+			if (!passed)
+				failures++;
+		}
+
+		if (failures > 0)
+		{
+			System.out.println(failures + " views failed");
+			System.exit(1);
+		}
+		System.out.println("All views match and calculated fewer pixels than a full render");
+	}
+
+}
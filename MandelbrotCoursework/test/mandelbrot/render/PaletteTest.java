@@ -0,0 +1,192 @@
+package mandelbrot.render;
+
+
+import java.awt.Color;
+
+import mandelbrot.maths.ComplexNumber;
+import mandelbrot.maths.EscapeResult;
+import mandelbrot.maths.EscapeTime;
+import mandelbrot.maths.Maths;
+
+/**
+ * Checks that the escape time kernel and the palette tables give the same colours as the original per pixel code,
+ * which iterated with {@link ComplexNumber} and coloured with {@link Color#HSBtoRGB(float, float, float)}. The tables
+ * interpolate between precomputed colours, so a channel may be off by one, but never by more. Run it with
+ *
+ * <pre>
+ * java -cp bin mandelbrot.render.PaletteTest
+ * </pre>
+ *
+ * and it exits with a non-zero status if any colour is further out than that
+ */
+public class PaletteTest
+{
+
+	/**
+	 * The most any channel of a colour may differ from the original code
+	 */
+	private static final int TOLERANCE = 1;
+
+	private static final int SAMPLES = 1000000;
+	private static final int GRID_WIDTH = 400;
+	private static final int GRID_HEIGHT = 300;
+	private static final int ITERATIONS = 300;
+
+	private static int failures;
+
+
+	public static void main(String[] args)
+	{
+		paletteMatchesHsb("Ocean", Palette.OCEAN, 0.65f, 5);
+		paletteMatchesHsb("Rose", Palette.ROSE, 0.95f, 10);
+		mandelbrotMatchesOriginal();
+		juliaMatchesOriginal(-0.8, 0.156);
+		juliaMatchesOriginal(0.285, 0.01);
+
+		if (failures > 0)
+		{
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+
+
+	/**
+	 * Compares a palette with the original hue formula over the whole range of smooth values
+	 */
+	private static void paletteMatchesHsb(String name, Palette palette, float hueOffset, float hueScale)
+	{
+		int worst = 0;
+		for (int i = 0; i <= SAMPLES; i++)
+		{
+			float value = (float) i / SAMPLES;
+			worst = Math.max(worst, channelDifference(palette.colour(value), Color.HSBtoRGB(hueOffset + hueScale * value, 0.6f, 1.0f)));
+		}
+		worst = Math.max(worst, channelDifference(palette.colour(Palette.INTERIOR), Color.BLACK.getRGB()));
+		check(name + " palette over [0, 1]", worst);
+	}
+
+
+	/**
+	 * Compares the kernel and the Ocean palette with the original Mandelbrot panel over its default view
+	 */
+	private static void mandelbrotMatchesOriginal()
+	{
+		EscapeResult result = new EscapeResult();
+		int worst = 0;
+		for (int y = 0; y < GRID_HEIGHT; y++)
+		{
+			for (int x = 0; x < GRID_WIDTH; x++)
+			{
+				double real = -2 + 4.0 * x / GRID_WIDTH;
+				double imaginary = -1.6 + 3.2 * y / GRID_HEIGHT;
+
+				EscapeTime.mandelbrot(real, imaginary, ITERATIONS, result);
+				float value = Palette.INTERIOR;
+				if (result.isEscaped())
+					value = (float) (result.getIterations() - Maths.fastLog2Log(result.getModulusSquared())) / ITERATIONS;
+
+				worst = Math.max(worst, channelDifference(Palette.OCEAN.colour(value), originalMandelbrotColour(new ComplexNumber(real,
+						imaginary))));
+			}
+		}
+		check("Mandelbrot kernel and palette", worst);
+	}
+
+
+	/**
+	 * Compares the kernel and the Rose palette with the original Julia panel for one constant
+	 */
+	private static void juliaMatchesOriginal(double cReal, double cImaginary)
+	{
+		EscapeResult result = new EscapeResult();
+		int worst = 0;
+		for (int y = 0; y < GRID_HEIGHT; y++)
+		{
+			for (int x = 0; x < GRID_WIDTH; x++)
+			{
+				double real = -2 + 4.0 * x / GRID_WIDTH;
+				double imaginary = -1.6 + 4.0 * y / GRID_HEIGHT;
+
+				EscapeTime.julia(real, imaginary, cReal, cImaginary, ITERATIONS, result);
+				float value = Palette.INTERIOR;
+				if (result.isEscaped())
+					value = (float) (result.getExponentialSum() / ITERATIONS);
+
+				worst = Math.max(worst, channelDifference(Palette.ROSE.colour(value), originalJuliaColour(new ComplexNumber(real, imaginary),
+						new ComplexNumber(cReal, cImaginary))));
+			}
+		}
+		check("Julia kernel and palette for c = " + cReal + " + " + cImaginary + "i", worst);
+	}
+
+
+	/**
+	 * The colour the Mandelbrot panel gave a pixel before the escape time kernel and palettes were added
+	 */
+	private static int originalMandelbrotColour(ComplexNumber complexCoordinate)
+	{
+		int color = Color.BLACK.getRGB();
+		float nsmooth = 0;
+		ComplexNumber z = complexCoordinate;
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			z = z.square().add(complexCoordinate);
+			if (z.modulusSquared() > 4)
+			{
+				nsmooth = (float) (i + 1 - Math.log(Math.log(z.modulusSquared())) / Math.log(2));
+				nsmooth = nsmooth / ITERATIONS;
+				color = Color.HSBtoRGB(0.65f + 5 * nsmooth, 0.6f, 1.0f);
+				break;
+			}
+		}
+		return color;
+	}
+
+
+	/**
+	 * The colour the Julia panel gave a pixel before the escape time kernel and palettes were added
+	 */
+	private static int originalJuliaColour(ComplexNumber z, ComplexNumber c)
+	{
+		int color = Color.BLACK.getRGB();
+		double smoothColor = Math.exp(-(z.modulusSquared()));
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			z = z.square().add(c);
+			smoothColor += Math.exp(-z.modulusSquared());
+			if (z.modulusSquared() > 4)
+			{
+				smoothColor = smoothColor / ITERATIONS;
+				color = Color.HSBtoRGB((float) (0.95f + 10 * smoothColor), 0.6f, 1.0f);
+				break;
+			}
+		}
+		return color;
+	}
+
+
+	/**
+	 * @return <b>difference</b> The largest difference between the red, green or blue channels of two colours
+	 */
+	private static int channelDifference(int first, int second)
+	{
+		int difference = 0;
+		for (int shift = 0; shift <= 16; shift += 8)
+		{
+			difference = Math.max(difference, Math.abs(((first >> shift) & 0xff) - ((second >> shift) & 0xff)));
+		}
+		return difference;
+	}
+
+
+	private static void check(String name, int worst)
+	{
+		boolean passed = worst <= TOLERANCE;
+		System.out.println((passed ? "PASS " : "FAIL ") + name + ": largest channel difference " + worst);
+		if (!passed)
+			failures++;
+	}
+
+}